@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.example;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.widget.FrameLayout;
+
+/**
+ * Logs how long the first press takes on the UI thread: handling the touch
+ * down, which starts the ripple, plus drawing the first frame after it.
+ * Launch with and without prewarm to compare:
+ * <pre>
+ * adb shell am start -n com.hippo.ripple.example/.MainActivity --ez prewarm false
+ * adb logcat -s FirstTap
+ * </pre>
+ */
+public class FirstTapFrameLayout extends FrameLayout {
+
+    private static final String LOG_TAG = "FirstTap";
+
+    private boolean mMeasured;
+    private boolean mPressPending;
+    private long mPressNanos;
+
+    public FirstTapFrameLayout(Context context) {
+        super(context);
+    }
+
+    public FirstTapFrameLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mMeasured || event.getActionMasked() != MotionEvent.ACTION_DOWN) {
+            return super.onTouchEvent(event);
+        }
+
+        final long start = System.nanoTime();
+        final boolean result = super.onTouchEvent(event);
+        mPressNanos = System.nanoTime() - start;
+        mPressPending = true;
+        return result;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (!mPressPending) {
+            super.draw(canvas);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        super.draw(canvas);
+        final long drawNanos = System.nanoTime() - start;
+
+        mPressPending = false;
+        mMeasured = true;
+        Log.i(LOG_TAG, "First tap: touch " + mPressNanos / 1000 + " us, draw "
+                + drawNanos / 1000 + " us, total " + (mPressNanos + drawNanos) / 1000 + " us");
+    }
+}
@@ -18,6 +18,8 @@ package com.hippo.ripple.example;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.view.View;
 
 import com.hippo.ripple.Ripple;
@@ -28,9 +30,20 @@ public class MainActivity extends Activity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        Ripple.installWindowDispatcher(this);
 
         View view = findViewById(R.id.main);
         view.setClickable(true);
         Ripple.addRipple(view, true);
+
+        if (getIntent().getBooleanExtra("prewarm", true)) {
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    Ripple.prewarm(MainActivity.this);
+                    return false;
+                }
+            });
+        }
     }
 }
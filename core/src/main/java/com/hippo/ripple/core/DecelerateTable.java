@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.ripple.core;
+
+/**
+ * The exit deceleration curve, sampled over the fraction of the animation.
+ * The curve doesn't depend on the duration, so one table serves every
+ * exiting ripple of the process, and reading it is a lookup and a linear
+ * interpolation instead of a {@code pow()}.
+ * <p>
+ * Samples are {@code 1 / INTERVALS} apart. The error of the interpolation
+ * is largest at the start, where the curve bends most, and stays below
+ * {@link #MAX_ERROR} of the tween for any duration.
+ */
+public final class DecelerateTable {
+    private DecelerateTable() {}
+
+    /** Number of intervals between the samples of the table. */
+    public static final int INTERVALS = 64;
+
+    /** Upper bound of the difference from {@link ExitTimeline#DECELERATE}. */
+    public static final float MAX_ERROR = 0.001f;
+
+    private static final float[] TABLE = new float[INTERVALS + 1];
+
+    static {
+        for (int i = 0; i <= INTERVALS; i++) {
+            TABLE[i] = ExitTimeline.DECELERATE.getInterpolation((float) i / INTERVALS);
+        }
+    }
+
+    /**
+     * @return the deceleration curve at {@code fraction}, from 0 to 1
+     */
+    public static float get(float fraction) {
+        if (fraction <= 0) {
+            return TABLE[0];
+        }
+        if (fraction >= 1) {
+            return TABLE[INTERVALS];
+        }
+
+        final float position = fraction * INTERVALS;
+        final int i = (int) position;
+        return RippleMath.lerp(TABLE[i], TABLE[i + 1], position - i);
+    }
+}
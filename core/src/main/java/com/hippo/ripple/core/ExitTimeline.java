@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.core;
+
+/**
+ * Values of an exiting ripple over time. Once a ripple exits, its radius
+ * and origin tweens decelerate to 1 and its opacity falls linearly to 0.
+ */
+public final class ExitTimeline {
+    private ExitTimeline() {}
+
+    /** The deceleration of the radius and origin tweens. */
+    public static final LogDecelerateInterpolator DECELERATE =
+            new LogDecelerateInterpolator(400f, 1.4f, 0);
+
+    /**
+     * @return how far an animation of {@code duration} is after
+     *         {@code elapsed}, from 0 to 1
+     */
+    public static float fraction(long elapsed, int duration) {
+        return elapsed >= duration ? 1.0f : (float) elapsed / duration;
+    }
+
+    /**
+     * @return {@code true} if all animations of an exit are over
+     */
+    public static boolean isFinished(long elapsed, int radiusDuration, int originDuration,
+            int opacityDuration) {
+        return elapsed >= radiusDuration && elapsed >= originDuration
+                && elapsed >= opacityDuration;
+    }
+
+    /**
+     * @return the radius or origin tween after {@code elapsed}, starting
+     *         from {@code start}
+     */
+    public static float tween(float start, long elapsed, int duration) {
+        return RippleMath.lerp(start, 1, DECELERATE.getInterpolation(fraction(elapsed, duration)));
+    }
+
+    /**
+     * @return the opacity after {@code elapsed}, starting from {@code start}
+     */
+    public static float opacity(float start, long elapsed, int duration) {
+        return RippleMath.lerp(start, 0, fraction(elapsed, duration));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.core;
+
+/**
+ * Interpolator with a smooth log deceleration.
+ */
+public final class LogDecelerateInterpolator {
+
+    private final float mBase;
+    private final float mDrift;
+    private final float mTimeScale;
+    private final float mOutputScale;
+
+    public LogDecelerateInterpolator(float base, float timeScale, float drift) {
+        mBase = base;
+        mDrift = drift;
+        mTimeScale = 1f / timeScale;
+
+        mOutputScale = 1f / computeLog(1f);
+    }
+
+    private float computeLog(float t) {
+        return 1f - (float) Math.pow(mBase, -t * mTimeScale) + (mDrift * t);
+    }
+
+    public float getInterpolation(float t) {
+        return computeLog(t) * mOutputScale;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.core;
+
+/**
+ * Geometry of ripples.
+ */
+public final class RippleMath {
+    private RippleMath() {}
+
+    public static float lerp(float start, float stop, float amount) {
+        return start + (stop - start) * amount;
+    }
+
+    /**
+     * @return the radius of a ripple that covers a container of
+     *         {@code width} by {@code height} from its center
+     */
+    public static float targetRadius(float width, float height) {
+        final float halfWidth = width / 2.0f;
+        final float halfHeight = height / 2.0f;
+        return (float) Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight);
+    }
+
+    /**
+     * Returns the factor to scale an offset from the center by for it to
+     * fit within a circle.
+     *
+     * @param dX the x offset from the center
+     * @param dY the y offset from the center
+     * @param radius the radius of the circle
+     * @return 1 if the offset is within the circle, or the factor that puts
+     *         it on the perimeter otherwise
+     */
+    public static float clampScale(float dX, float dY, float radius) {
+        final float d2 = dX * dX + dY * dY;
+        if (d2 > radius * radius) {
+            return radius / (float) Math.sqrt(d2);
+        }
+        return 1.0f;
+    }
+
+    /**
+     * @return {@code true} if a paint of {@code alpha} at {@code opacity}
+     *         rounds to fully transparent
+     */
+    public static boolean isInvisible(int alpha, float opacity) {
+        return (int) (alpha * opacity + 0.5f) == 0;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.core;
+
+/**
+ * Durations of ripple animations. Accelerations are in dp/s^2, radii in
+ * pixels and durations in ms.
+ */
+public final class RippleTiming {
+    private RippleTiming() {}
+
+    /**
+     * @return the duration of an unbounded ripple growing to
+     *         {@code targetRadius} while pressed
+     */
+    public static int enterDuration(float targetRadius, float downAcceleration,
+            float densityScale) {
+        return (int) (1000 * Math.sqrt(targetRadius / downAcceleration * densityScale) + 0.5);
+    }
+
+    /**
+     * @return the duration of an unbounded ripple growing by
+     *         {@code remainingRadius} once released
+     */
+    public static int radiusExitDuration(float remainingRadius, float upAcceleration,
+            float downAcceleration, float densityScale) {
+        return (int) (1000 * Math.sqrt(remainingRadius / (upAcceleration + downAcceleration)
+                * densityScale) + 0.5);
+    }
+
+    /**
+     * @return the duration of an unbounded ripple fading out from
+     *         {@code opacity}
+     */
+    public static int opacityExitDuration(float opacity, float decayVelocity) {
+        return (int) (1000 * opacity / decayVelocity + 0.5f);
+    }
+
+    /**
+     * @return the duration of a linear fade in from {@code opacity}, where a
+     *         fade in from 0 takes {@code maxDuration}
+     */
+    public static int fadeInDuration(float opacity, int maxDuration) {
+        return (int) ((1 - opacity) * maxDuration);
+    }
+}
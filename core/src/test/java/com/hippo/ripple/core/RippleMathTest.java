@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RippleMathTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void targetRadius() {
+        assertEquals(5, RippleMath.targetRadius(6, 8), EPSILON);
+    }
+
+    @Test
+    public void clampScale() {
+        assertEquals(1, RippleMath.clampScale(3, 4, 5), EPSILON);
+        assertEquals(0.5f, RippleMath.clampScale(6, 8, 5), EPSILON);
+    }
+
+    @Test
+    public void isInvisible() {
+        assertTrue(RippleMath.isInvisible(15, 0.03f));
+        assertFalse(RippleMath.isInvisible(15, 0.04f));
+    }
+
+    @Test
+    public void exitTimeline() {
+        assertEquals(0.5f, ExitTimeline.tween(0.5f, 0, 100), EPSILON);
+        assertEquals(1, ExitTimeline.tween(0.5f, 100, 100), EPSILON);
+        assertEquals(0.5f, ExitTimeline.opacity(1, 50, 100), EPSILON);
+        assertFalse(ExitTimeline.isFinished(99, 50, 100, 80));
+        assertTrue(ExitTimeline.isFinished(100, 50, 100, 80));
+    }
+
+    @Test
+    public void decelerateTable() {
+        assertEquals(0, DecelerateTable.get(0), EPSILON);
+        assertEquals(1, DecelerateTable.get(1), EPSILON);
+
+        // The error is largest halfway between two samples.
+        for (int i = 0; i < DecelerateTable.INTERVALS; i++) {
+            final float fraction = (i + 0.5f) / DecelerateTable.INTERVALS;
+            assertEquals(ExitTimeline.DECELERATE.getInterpolation(fraction),
+                    DecelerateTable.get(fraction), DecelerateTable.MAX_ERROR);
+        }
+
+        // Short exits sample the curve far from the table samples.
+        final int[] durations = {20, 40, 100, 300, 833};
+        for (int duration : durations) {
+            for (long elapsed = 0; elapsed <= duration; elapsed++) {
+                final float fraction = ExitTimeline.fraction(elapsed, duration);
+                assertEquals(ExitTimeline.DECELERATE.getInterpolation(fraction),
+                        DecelerateTable.get(fraction), DecelerateTable.MAX_ERROR);
+            }
+        }
+    }
+
+    @Test
+    public void opacityExitDuration() {
+        assertEquals(333, RippleTiming.opacityExitDuration(1, 3));
+        assertEquals(300, RippleTiming.fadeInDuration(0.5f, 600));
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.hippo.ripple.core.DecelerateTable;
+import com.hippo.ripple.core.ExitTimeline;
+import com.hippo.ripple.core.RippleMath;
+
+/**
+ * Exiting ripples of one drawable, stored as parallel primitive arrays.
+ * <p>
+ * Once a {@link RippleForeground} starts to exit, nothing but time changes
+ * it, so instead of keeping the object and its animators alive, its state is
+ * copied here and all exiting ripples are updated and drawn in one loop.
+ * Positions are relative to the center of the hotspot bounds, and the
+ * deceleration is read from the table shared by all exiting ripples.
+ */
+final class ExitingRipples {
+
+    /**
+     * Maximum distance in pixels between the centers and between the radii
+     * of two ripples drawn as one circle.
+     */
+    private static final float MERGE_TOLERANCE = 0.5f;
+
+    private final int mCapacity;
+    private int mCount;
+
+    // Values captured when the exit started.
+    private final float[] mStartX;
+    private final float[] mStartY;
+    private final float[] mTargetX;
+    private final float[] mTargetY;
+    private final float[] mTargetRadius;
+    private final float[] mStartTweenRadius;
+    private final float[] mStartTweenOrigin;
+    private final float[] mStartOpacity;
+    private final int[] mRadiusDuration;
+    private final int[] mOriginDuration;
+    private final int[] mOpacityDuration;
+    private final long[] mStartTime;
+
+    // Values computed by the last update().
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mRadius;
+    private final float[] mOpacity;
+
+    /** Whether a ripple was merged into another by the current draw(). */
+    private final boolean[] mMerged;
+
+    public ExitingRipples(int capacity) {
+        mCapacity = capacity;
+        mStartX = new float[capacity];
+        mStartY = new float[capacity];
+        mTargetX = new float[capacity];
+        mTargetY = new float[capacity];
+        mTargetRadius = new float[capacity];
+        mStartTweenRadius = new float[capacity];
+        mStartTweenOrigin = new float[capacity];
+        mStartOpacity = new float[capacity];
+        mRadiusDuration = new int[capacity];
+        mOriginDuration = new int[capacity];
+        mOpacityDuration = new int[capacity];
+        mStartTime = new long[capacity];
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mRadius = new float[capacity];
+        mOpacity = new float[capacity];
+        mMerged = new boolean[capacity];
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public boolean isFull() {
+        return mCount >= mCapacity;
+    }
+
+    /**
+     * @return the time at which the last ripple finishes exiting, or
+     *         {@link Long#MIN_VALUE} if there is none
+     */
+    public long getEndTime() {
+        long endTime = Long.MIN_VALUE;
+        for (int i = 0, count = mCount; i < count; i++) {
+            final int duration = Math.max(mRadiusDuration[i],
+                    Math.max(mOriginDuration[i], mOpacityDuration[i]));
+            endTime = Math.max(endTime, mStartTime[i] + duration);
+        }
+        return endTime;
+    }
+
+    /**
+     * Removes all ripples, as if their exit animations had ended.
+     */
+    public void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * Removes the ripple that started exiting first, as if its exit animation
+     * had ended.
+     */
+    public void removeOldest() {
+        if (mCount > 0) {
+            for (int i = 1; i < mCount; i++) {
+                move(i, i - 1);
+            }
+            mCount--;
+        }
+    }
+
+    /**
+     * Adds a ripple that starts exiting at {@code startTime}. Ignored if the
+     * array is full.
+     */
+    public void add(float startX, float startY, float targetX, float targetY, float targetRadius,
+            float tweenRadius, float tweenOrigin, float opacity,
+            int radiusDuration, int originDuration, int opacityDuration, long startTime) {
+        if (mCount >= mCapacity) {
+            return;
+        }
+
+        final int i = mCount++;
+        mStartX[i] = startX;
+        mStartY[i] = startY;
+        mTargetX[i] = targetX;
+        mTargetY[i] = targetY;
+        mTargetRadius[i] = targetRadius;
+        mStartTweenRadius[i] = tweenRadius;
+        mStartTweenOrigin[i] = tweenOrigin;
+        mStartOpacity[i] = opacity;
+        mRadiusDuration[i] = radiusDuration;
+        mOriginDuration[i] = originDuration;
+        mOpacityDuration[i] = opacityDuration;
+        mStartTime[i] = startTime;
+
+        mX[i] = RippleMath.lerp(startX, targetX, tweenOrigin);
+        mY[i] = RippleMath.lerp(startY, targetY, tweenOrigin);
+        mRadius[i] = targetRadius * tweenRadius;
+        mOpacity[i] = opacity;
+    }
+
+    /**
+     * Computes the state of every ripple at {@code now} and prunes the ones
+     * that have finished exiting. Opacity only decreases while exiting, so
+     * ripples that would be drawn with no alpha are finished too.
+     *
+     * @param alpha the alpha of the paint the ripples are drawn with
+     * @return {@code true} if any ripple is still exiting
+     */
+    public boolean update(long now, int alpha) {
+        final int count = mCount;
+        int remaining = 0;
+
+        for (int i = 0; i < count; i++) {
+            final long elapsed = now - mStartTime[i];
+            final int radiusDuration = mRadiusDuration[i];
+            final int originDuration = mOriginDuration[i];
+            final int opacityDuration = mOpacityDuration[i];
+            if (ExitTimeline.isFinished(elapsed, radiusDuration, originDuration,
+                    opacityDuration)) {
+                // Finished exiting.
+                continue;
+            }
+
+            final float opacity = ExitTimeline.opacity(mStartOpacity[i], elapsed, opacityDuration);
+            if (RippleMath.isInvisible(alpha, opacity)) {
+                // Can't be seen anymore.
+                continue;
+            }
+
+            if (remaining != i) {
+                move(i, remaining);
+            }
+
+            final int j = remaining++;
+            final float tweenRadius = RippleMath.lerp(mStartTweenRadius[j], 1,
+                    DecelerateTable.get(ExitTimeline.fraction(elapsed, radiusDuration)));
+            final float tweenOrigin = RippleMath.lerp(mStartTweenOrigin[j], 1,
+                    DecelerateTable.get(ExitTimeline.fraction(elapsed, originDuration)));
+            mX[j] = RippleMath.lerp(mStartX[j], mTargetX[j], tweenOrigin);
+            mY[j] = RippleMath.lerp(mStartY[j], mTargetY[j], tweenOrigin);
+            mRadius[j] = mTargetRadius[j] * tweenRadius;
+            mOpacity[j] = opacity;
+        }
+
+        mCount = remaining;
+        return remaining > 0;
+    }
+
+    private void move(int from, int to) {
+        mStartX[to] = mStartX[from];
+        mStartY[to] = mStartY[from];
+        mTargetX[to] = mTargetX[from];
+        mTargetY[to] = mTargetY[from];
+        mTargetRadius[to] = mTargetRadius[from];
+        mStartTweenRadius[to] = mStartTweenRadius[from];
+        mStartTweenOrigin[to] = mStartTweenOrigin[from];
+        mStartOpacity[to] = mStartOpacity[from];
+        mRadiusDuration[to] = mRadiusDuration[from];
+        mOriginDuration[to] = mOriginDuration[from];
+        mOpacityDuration[to] = mOpacityDuration[from];
+        mStartTime[to] = mStartTime[from];
+        mX[to] = mX[from];
+        mY[to] = mY[from];
+        mRadius[to] = mRadius[from];
+        mOpacity[to] = mOpacity[from];
+    }
+
+    /**
+     * Draws all ripples as of the last {@link #update(long, int)}, inheriting the
+     * paint's color and alpha properties. Large, faint ripples are drawn
+     * without anti-aliasing as {@code spec} allows.
+     * <p>
+     * All ripples have the same color, so the result of blending them
+     * doesn't depend on their order. Ripples with the same center and radius
+     * are drawn as one circle of their combined alpha.
+     *
+     * @return {@code true} if something was drawn, {@code false} otherwise
+     */
+    public boolean draw(Canvas c, Paint p, RippleSpec spec) {
+        boolean hasContent = false;
+
+        final int origAlpha = p.getAlpha();
+        final int count = mCount;
+        final boolean[] merged = mMerged;
+        for (int i = 0; i < count; i++) {
+            merged[i] = false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            final float radius = mRadius[i];
+            if (merged[i] || radius <= 0) {
+                continue;
+            }
+
+            // Blending alphas a and b over each other yields 1 - (1 - a)(1 - b).
+            final float paintAlpha = origAlpha / 255.0f;
+            float transparency = 1 - paintAlpha * mOpacity[i];
+            for (int j = i + 1; j < count; j++) {
+                if (!merged[j] && Math.abs(mRadius[j] - radius) <= MERGE_TOLERANCE
+                        && Math.abs(mX[j] - mX[i]) <= MERGE_TOLERANCE
+                        && Math.abs(mY[j] - mY[i]) <= MERGE_TOLERANCE) {
+                    transparency *= 1 - paintAlpha * mOpacity[j];
+                    merged[j] = true;
+                }
+            }
+
+            final int alpha = (int) (255 * (1 - transparency) + 0.5f);
+            if (alpha > 0) {
+                p.setAlpha(alpha);
+                p.setAntiAlias(!spec.isLowDetail(radius, alpha));
+                c.drawCircle(mX[i], mY[i], radius, p);
+                hasContent = true;
+            }
+        }
+        p.setAlpha(origAlpha);
+
+        return hasContent;
+    }
+
+    /**
+     * Unions {@code bounds} with the maximum bounds of every ripple, offset
+     * by the center of the hotspot bounds.
+     */
+    public void unionBounds(Rect bounds, int cX, int cY) {
+        final int count = mCount;
+        for (int i = 0; i < count; i++) {
+            final int outerX = cX + (int) mTargetX[i];
+            final int outerY = cY + (int) mTargetY[i];
+            final int r = (int) mTargetRadius[i] + 1;
+            bounds.union(outerX - r, outerY - r, outerX + r, outerY + r);
+        }
+    }
+}
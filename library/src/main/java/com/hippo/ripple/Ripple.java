@@ -16,8 +16,13 @@
 
 package com.hippo.ripple;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
@@ -25,15 +30,23 @@ import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.DisplayMetrics;
+import android.util.LongSparseArray;
 import android.util.Log;
 import android.view.View;
-
-import com.hippo.hotspot.Hotspot;
+import android.widget.FrameLayout;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+/**
+ * Entry point for adding ripples to views.
+ * <p>
+ * All methods may be called on any thread, for example during asynchronous
+ * layout inflation, as long as the view is not attached yet. Setup that
+ * needs the UI thread is deferred until the view is attached. The only
+ * exception is {@link #prewarm(Context)}.
+ */
 public final class Ripple {
     private Ripple() {}
 
@@ -42,6 +55,32 @@ public final class Ripple {
     private static final int RIPPLE_MATERIAL_DARK = 0x4dffffff;
     private static final int RIPPLE_MATERIAL_LIGHT = 0x1f000000;
 
+    private static final int[] STATE_PRESSED = {
+            android.R.attr.state_enabled, android.R.attr.state_pressed};
+    private static final int[] STATE_ENABLED = {
+            android.R.attr.state_enabled};
+
+    private static boolean sPrewarmed;
+
+    private static final Drawable.Callback NO_OP_CALLBACK = new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {}
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {}
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {}
+    };
+
+    /**
+     * Configured platform ripples to clone, keyed by color, density and
+     * whether they have content. Guarded by itself.
+     */
+    private static final LongSparseArray<Drawable.ConstantState> sPrototypes =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                    ? new LongSparseArray<Drawable.ConstantState>() : null;
+
     private static final Method sSetTargetDensityMethod;
     private static final Field sDensityField;
 
@@ -100,6 +139,177 @@ public final class Ripple {
         }
     }
 
+    /**
+     * Applies the parts of {@code spec} that platform ripples support.
+     */
+    private static void applySpec(android.graphics.drawable.RippleDrawable rippleDrawable,
+            RippleSpec spec) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && spec.getMaxRadius() != RippleSpec.RADIUS_AUTO) {
+            rippleDrawable.setRadius(spec.getMaxRadius());
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static android.graphics.drawable.RippleDrawable createPlatformRipple(Context context,
+            ColorStateList color, Drawable content, RippleSpec spec) {
+        final android.graphics.drawable.RippleDrawable rippleDrawable =
+                new android.graphics.drawable.RippleDrawable(color, content, new ColorDrawable(Color.BLACK));
+        applyDensity(context, rippleDrawable);
+        applySpec(rippleDrawable, spec);
+        return rippleDrawable;
+    }
+
+    /**
+     * Creates a platform ripple. Ripples with a single color and the default
+     * radius are cloned from a cached prototype, so they share its constant
+     * state and skip the reflective density setup. Only the content layer is
+     * swapped.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static Drawable newPlatformRipple(Context context, ColorStateList color,
+            Drawable content, RippleSpec spec) {
+        if (color.isStateful() || spec.getMaxRadius() != RippleSpec.RADIUS_AUTO) {
+            return createPlatformRipple(context, color, content, spec);
+        }
+
+        final Resources resources = context.getResources();
+        final long key = ((long) color.getDefaultColor() << 32)
+                | (resources.getDisplayMetrics().densityDpi << 1) | (content != null ? 1 : 0);
+
+        Drawable.ConstantState prototype;
+        synchronized (sPrototypes) {
+            prototype = sPrototypes.get(key);
+            if (prototype == null) {
+                // A placeholder content layer with an id, so it can be swapped.
+                final android.graphics.drawable.RippleDrawable rippleDrawable =
+                        createPlatformRipple(context, color,
+                                content != null ? new ColorDrawable(Color.TRANSPARENT) : null, spec);
+                if (content != null) {
+                    rippleDrawable.setId(0, android.R.id.content);
+                }
+                prototype = rippleDrawable.getConstantState();
+                if (prototype == null) {
+                    return createPlatformRipple(context, color, content, spec);
+                }
+                sPrototypes.put(key, prototype);
+            }
+        }
+
+        final android.graphics.drawable.RippleDrawable rippleDrawable =
+                (android.graphics.drawable.RippleDrawable) prototype.newDrawable(resources);
+        if (content != null) {
+            rippleDrawable.setDrawableByLayerId(android.R.id.content, content);
+        }
+        return rippleDrawable;
+    }
+
+    /**
+     * Loads and runs the code behind the first press once, off-screen, so
+     * that the first real press doesn't pay for class loading and lazy
+     * initialization. Does nothing after the first call.
+     * <p>
+     * Must be called on the UI thread. Best done when the app is idle after
+     * launch, for example from a {@link android.os.MessageQueue.IdleHandler}.
+     */
+    public static void prewarm(@NonNull Context context) {
+        if (sPrewarmed) {
+            return;
+        }
+        sPrewarmed = true;
+
+        final Bitmap bitmap = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final ColorStateList color = ColorStateList.valueOf(RIPPLE_MATERIAL_LIGHT);
+
+        // Bounded and unbounded ripples take different paths.
+        prewarm(generateRippleDrawable(context, color, new ColorDrawable(Color.TRANSPARENT)), canvas);
+        prewarm(generateRippleDrawable(context, color, null), canvas);
+
+        bitmap.recycle();
+    }
+
+    private static void prewarm(Drawable drawable, Canvas canvas) {
+        drawable.setCallback(NO_OP_CALLBACK);
+        drawable.setBounds(0, 0, 48, 48);
+
+        // Press, draw a frame, release, draw a frame.
+        if (drawable instanceof RippleDrawable) {
+            ((RippleDrawable) drawable).setHotspot(12, 12);
+        }
+        drawable.setState(STATE_PRESSED);
+        drawable.draw(canvas);
+        drawable.setState(STATE_ENABLED);
+        drawable.draw(canvas);
+
+        drawable.jumpToCurrentState();
+        drawable.setCallback(null);
+    }
+
+    /**
+     * Sets the maximum number of ripple animations drawn by this library that
+     * may run at once in the process. When a new one starts beyond it, the
+     * oldest ones jump to their end state. Platform ripples, used on API 21
+     * and above, aren't counted. Must be called on the UI thread.
+     *
+     * @param maxAnimating the budget, at least 1
+     */
+    public static void setMaxAnimatingRipples(int maxAnimating) {
+        if (maxAnimating < 1) {
+            throw new IllegalArgumentException("maxAnimating must be at least 1");
+        }
+        RippleTracker.setMaxAnimating(maxAnimating);
+    }
+
+    public static int getMaxAnimatingRipples() {
+        return RippleTracker.getMaxAnimating();
+    }
+
+    /**
+     * @return the number of ripple animations ended early because the budget
+     *         set by {@link #setMaxAnimatingRipples(int)} was exceeded,
+     *         always 0 on API 21 and above
+     */
+    public static int getEvictedRippleCount() {
+        return RippleTracker.getEvictionCount();
+    }
+
+    /**
+     * Enables an on-screen overlay on every ripple drawn by this library,
+     * showing its dirty rect, its active and exiting ripple counts and how
+     * long its last draw took. For debugging only. Must be called on the UI
+     * thread; drawables pick it up on their next draw.
+     */
+    public static void setDebugOverlayEnabled(boolean enabled) {
+        RippleDebug.sEnabled = enabled;
+    }
+
+    /**
+     * Makes ripples drawn by this library on views wait for the tap timeout
+     * before showing a press. If the press turns out to be the start of a
+     * scroll meanwhile, it's dropped without animating anything, so flings
+     * in feeds don't pay for ripples nobody meant. Presses released within
+     * the timeout still show a tap. Off by default. Must be called on the
+     * UI thread.
+     */
+    public static void setScrollAwarePressEnabled(boolean enabled) {
+        RippleDrawable.sScrollAware = enabled;
+    }
+
+    /**
+     * Feeds touch hotspots to all ripples in the window of {@code activity}
+     * from one window callback, instead of a touch listener per rippled
+     * view. Only pressed ripples get hotspots. Call it after
+     * {@code setContentView()} and before the window is shown; views
+     * attached earlier keep their own listener. No-op on API 21 and above,
+     * where the platform handles hotspots.
+     */
+    public static void installWindowDispatcher(@NonNull Activity activity) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            RippleWindowDispatcher.install(activity.getWindow());
+        }
+    }
+
     public static void addRipple(@NonNull View c, boolean dark) {
         final ColorStateList color = ColorStateList.valueOf(
                 dark ? RIPPLE_MATERIAL_DARK : RIPPLE_MATERIAL_LIGHT);
@@ -107,34 +317,92 @@ public final class Ripple {
     }
 
     public static void addRipple(@NonNull View v, @NonNull ColorStateList color) {
+        if (hasRippleBackground(v)) {
+            return;
+        }
+        addRipple(v, color, v.getBackground());
+    }
+
+    private static boolean hasRippleBackground(View v) {
         final Drawable bg = v.getBackground();
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-            if (bg instanceof RippleDrawable) {
-                return;
-            }
+            return bg instanceof RippleDrawable;
         } else {
-            if (bg instanceof android.graphics.drawable.RippleDrawable) {
-                return;
-            }
+            return bg instanceof android.graphics.drawable.RippleDrawable;
         }
-        addRipple(v, color, v.getBackground());
     }
 
-    @SuppressWarnings("deprecation")
     public static void addRipple(@NonNull View v, @NonNull ColorStateList color,
             @Nullable Drawable content) {
+        addRipple(v, color, content, RippleSpec.MATERIAL);
+    }
+
+    @SuppressWarnings("deprecation")
+    public static void addRipple(@NonNull View v, @NonNull ColorStateList color,
+            @Nullable Drawable content, @NonNull RippleSpec spec) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-            final RippleDrawable rippleDrawable = new RippleDrawable(v.getContext(), color, content);
-            Hotspot.addHotspotable(v, rippleDrawable);
+            final RippleDrawable rippleDrawable =
+                    new RippleDrawable(v.getContext(), color, content, content != null, spec);
+            rippleDrawable.attachTo(v, v.getBackground());
             v.setBackgroundDrawable(rippleDrawable);
         } else {
-            final android.graphics.drawable.RippleDrawable rippleDrawable =
-                    new android.graphics.drawable.RippleDrawable(color, content, new ColorDrawable(Color.BLACK));
-            applyDensity(v.getContext(), rippleDrawable);
-            v.setBackground(rippleDrawable);
+            v.setBackground(newPlatformRipple(v.getContext(), color, content, spec));
         }
     }
 
+    public static boolean addRippleForeground(@NonNull View v, boolean dark) {
+        final ColorStateList color = ColorStateList.valueOf(
+                dark ? RIPPLE_MATERIAL_DARK : RIPPLE_MATERIAL_LIGHT);
+        return addRippleForeground(v, color);
+    }
+
+    /**
+     * Adds a ripple drawn above the children of {@code v} as its foreground.
+     * The background and the children don't have to be redrawn while the
+     * ripple animates. The ripple is bounded to the view.
+     * <p>
+     * A foreground is supported by {@link FrameLayout} on all API levels and
+     * by any view on API 23 and above. For other views the ripple is added
+     * as background instead.
+     *
+     * @return {@code true} if the ripple was added as foreground,
+     *         {@code false} if it was added as background
+     */
+    public static boolean addRippleForeground(@NonNull View v, @NonNull ColorStateList color) {
+        return addRippleForeground(v, color, RippleSpec.MATERIAL);
+    }
+
+    /**
+     * Same as {@link #addRippleForeground(View, ColorStateList)}, with the
+     * timing and physics constants of {@code spec}.
+     */
+    public static boolean addRippleForeground(@NonNull View v, @NonNull ColorStateList color,
+            @NonNull RippleSpec spec) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M && !(v instanceof FrameLayout)) {
+            if (!hasRippleBackground(v)) {
+                addRipple(v, color, v.getBackground(), spec);
+            }
+            return false;
+        }
+
+        final Drawable foreground;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            final RippleDrawable rippleDrawable =
+                    new RippleDrawable(v.getContext(), color, null, true, spec);
+            rippleDrawable.attachTo(v, ((FrameLayout) v).getForeground());
+            foreground = rippleDrawable;
+        } else {
+            foreground = newPlatformRipple(v.getContext(), color, null, spec);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            v.setForeground(foreground);
+        } else {
+            ((FrameLayout) v).setForeground(foreground);
+        }
+        return true;
+    }
+
     public static Drawable generateRippleDrawable(@NonNull Context context, boolean dark) {
         return generateRippleDrawable(context, dark, null);
     }
@@ -153,13 +421,15 @@ public final class Ripple {
 
     public static Drawable generateRippleDrawable(@NonNull Context context,
             @NonNull ColorStateList color, @Nullable Drawable content) {
+        return generateRippleDrawable(context, color, content, RippleSpec.MATERIAL);
+    }
+
+    public static Drawable generateRippleDrawable(@NonNull Context context,
+            @NonNull ColorStateList color, @Nullable Drawable content, @NonNull RippleSpec spec) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-            return new RippleDrawable(context, color, content);
+            return new RippleDrawable(context, color, content, content != null, spec);
         } else {
-            final android.graphics.drawable.RippleDrawable rippleDrawable =
-                    new android.graphics.drawable.RippleDrawable(color, content, new ColorDrawable(Color.BLACK));
-            applyDensity(context, rippleDrawable);
-            return rippleDrawable;
+            return newPlatformRipple(context, color, content, spec);
         }
     }
 }
@@ -19,6 +19,7 @@ package com.hippo.ripple;
 import android.animation.Animator;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
 import android.animation.TimeInterpolator;
 import android.graphics.Canvas;
 import android.graphics.Paint;
@@ -26,6 +27,8 @@ import android.graphics.Rect;
 import android.os.Build;
 import android.view.animation.LinearInterpolator;
 
+import com.hippo.ripple.core.RippleTiming;
+
 // android-7.0.0_r1
 
 /**
@@ -34,18 +37,14 @@ import android.view.animation.LinearInterpolator;
 class RippleBackground extends RippleComponent {
     private static final TimeInterpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
 
-    private static final int OPACITY_ENTER_DURATION = 600;
-    private static final int OPACITY_ENTER_DURATION_FAST = 120;
-    private static final int OPACITY_EXIT_DURATION = 480;
-
     // Software rendering properties.
     private float mOpacity = 0;
 
     /** Whether this ripple is bounded. */
     private final boolean mIsBounded;
 
-    public RippleBackground(RippleDrawable owner, Rect bounds, boolean isBounded) {
-        super(owner, bounds);
+    public RippleBackground(RippleDrawable owner, Rect bounds, RippleSpec spec, boolean isBounded) {
+        super(owner, bounds, spec);
 
         mIsBounded = isBounded;
     }
@@ -62,6 +61,7 @@ class RippleBackground extends RippleComponent {
         final int alpha = (int) (origAlpha * mOpacity + 0.5f);
         if (alpha > 0) {
             p.setAlpha(alpha);
+            p.setAntiAlias(!mSpec.isLowDetail(mTargetRadius, alpha));
             c.drawCircle(0, 0, mTargetRadius, p);
             p.setAlpha(origAlpha);
             hasContent = true;
@@ -73,8 +73,9 @@ class RippleBackground extends RippleComponent {
     @Override
     protected Animator createSoftwareEnter(boolean fast) {
         // Linear enter based on current opacity.
-        final int maxDuration = fast ? OPACITY_ENTER_DURATION_FAST : OPACITY_ENTER_DURATION;
-        final int duration = (int) ((1 - mOpacity) * maxDuration);
+        final int maxDuration = fast ? mSpec.getBackgroundOpacityEnterDurationFast()
+                : mSpec.getBackgroundOpacityEnterDuration();
+        final int duration = RippleTiming.fadeInDuration(mOpacity, maxDuration);
 
         final ObjectAnimator opacity = ObjectAnimator.ofFloat(this, OPACITY, 1);
         opacity.setDuration(duration);
@@ -86,23 +87,57 @@ class RippleBackground extends RippleComponent {
         return opacity;
     }
 
-    @Override
-    protected Animator createSoftwareExit() {
+    /**
+     * Shows or hides the background right away, without animating.
+     */
+    public void jump(boolean visible) {
+        cancel();
+
+        mOpacity = visible ? 1 : 0;
+        invalidateSelf();
+    }
+
+    /**
+     * Starts a background exit animation.
+     */
+    public void exit() {
+        cancel();
+
+        if (!canDisplay()) {
+            // Nobody would see the animation, jump straight to the end.
+            mOpacity = 0;
+            return;
+        }
+
+        startSoftwareAnimation(createSoftwareExit());
+    }
+
+    private Animator createSoftwareExit() {
         final AnimatorSet set = new AnimatorSet();
 
         // Linear exit after enter is completed.
         final ObjectAnimator exit = ObjectAnimator.ofFloat(this, RippleBackground.OPACITY, 0);
         exit.setInterpolator(LINEAR_INTERPOLATOR);
-        exit.setDuration(OPACITY_EXIT_DURATION);
+        exit.setDuration(mSpec.getBackgroundOpacityExitDuration());
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
             exit.setAutoCancel(true);
         }
+        exit.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                // The rest of the exit would draw nothing.
+                if (isInvisible(mOpacity)) {
+                    animation.removeUpdateListener(this);
+                    end();
+                }
+            }
+        });
 
         final AnimatorSet.Builder builder = set.play(exit);
 
         // Linear "fast" enter based on current opacity.
-        final int fastEnterDuration = mIsBounded ?
-                (int) ((1 - mOpacity) * OPACITY_ENTER_DURATION_FAST) : 0;
+        final int fastEnterDuration = mIsBounded ? RippleTiming.fadeInDuration(mOpacity,
+                mSpec.getBackgroundOpacityEnterDurationFast()) : 0;
         if (fastEnterDuration > 0) {
             final ObjectAnimator enter = ObjectAnimator.ofFloat(this, RippleBackground.OPACITY, 1);
             enter.setInterpolator(LINEAR_INTERPOLATOR);
@@ -117,6 +152,11 @@ class RippleBackground extends RippleComponent {
         return set;
     }
 
+    @Override
+    protected void jumpToEnterEnd() {
+        mOpacity = 1;
+    }
+
     private static abstract class BackgroundProperty extends FloatProperty<RippleBackground> {
         public BackgroundProperty(String name) {
             super(name);
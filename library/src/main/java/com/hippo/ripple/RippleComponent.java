@@ -17,25 +17,34 @@
 package com.hippo.ripple;
 
 import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.DisplayMetrics;
 
+import com.hippo.ripple.core.RippleMath;
+
 // android-7.0.0_r1
 
 /**
  * Abstract class that handles hardware/software hand-off and lifecycle for
  * animated ripple foreground and background components.
  */
-abstract class RippleComponent {
+abstract class RippleComponent implements RippleTracker.Animation {
     private final RippleDrawable mOwner;
 
+    /** Timing and physics constants. */
+    protected final RippleSpec mSpec;
+
     /** Bounds used for computing max radius. May be modified by the owner. */
-    protected final Rect mBounds;
+    protected Rect mBounds;
 
     private Animator mSoftwareAnimator;
 
+    /** Whether a running animation is counted by {@link RippleTracker}. */
+    private boolean mTracked;
+
     /** Whether we have an explicit maximum radius. */
     private boolean mHasMaxRadius;
 
@@ -45,9 +54,18 @@ abstract class RippleComponent {
     /** Screen density used to adjust pixel-based constants. */
     protected float mDensityScale;
 
-    public RippleComponent(RippleDrawable owner, Rect bounds) {
+    public RippleComponent(RippleDrawable owner, Rect bounds, RippleSpec spec) {
         mOwner = owner;
         mBounds = bounds;
+        mSpec = spec;
+    }
+
+    /**
+     * Replaces the bounds object shared with the owner. Call
+     * {@link #onBoundsChange()} afterwards if the values changed too.
+     */
+    public final void setBounds(Rect bounds) {
+        mBounds = bounds;
     }
 
     public void onBoundsChange() {
@@ -58,6 +76,8 @@ abstract class RippleComponent {
     }
 
     public final void setup(float maxRadius, int densityDpi) {
+        mDensityScale = (float) densityDpi / (float) DisplayMetrics.DENSITY_DEFAULT;
+
         if (maxRadius >= 0) {
             mHasMaxRadius = true;
             mTargetRadius = maxRadius;
@@ -65,15 +85,18 @@ abstract class RippleComponent {
             mTargetRadius = getTargetRadius(mBounds);
         }
 
-        mDensityScale = (float) densityDpi / (float) DisplayMetrics.DENSITY_DEFAULT;
-
         onTargetRadiusChanged(mTargetRadius);
     }
 
-    private static float getTargetRadius(Rect bounds) {
-        final float halfWidth = bounds.width() / 2.0f;
-        final float halfHeight = bounds.height() / 2.0f;
-        return (float) Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight);
+    private float getTargetRadius(Rect bounds) {
+        final float radius = RippleMath.targetRadius(bounds.width(), bounds.height());
+
+        // Unbounded ripples of large containers can cover most of the window.
+        final float maxRadius = mSpec.getMaxUnboundedRadius() * mDensityScale;
+        if (maxRadius > 0 && radius > maxRadius && !mOwner.isBounded()) {
+            return maxRadius;
+        }
+        return radius;
     }
 
     /**
@@ -84,23 +107,64 @@ abstract class RippleComponent {
     public final void enter(boolean fast) {
         cancel();
 
-        mSoftwareAnimator = createSoftwareEnter(fast);
+        if (!mOwner.canDisplay()) {
+            // Nobody would see the animation, jump straight to the end.
+            jumpToEnterEnd();
+            return;
+        }
+
+        startSoftwareAnimation(createSoftwareEnter(fast));
+    }
+
+    /**
+     * Starts {@code animator} as the current software animation. Any previous
+     * animation should have been canceled or ended first.
+     */
+    protected final void startSoftwareAnimation(Animator animator) {
+        mSoftwareAnimator = animator;
 
         if (mSoftwareAnimator != null) {
+            mSoftwareAnimator.addListener(mTrackingListener);
+            setTracked(true);
             mSoftwareAnimator.start();
         }
     }
 
-    /**
-     * Starts a ripple exit animation.
-     */
-    public final void exit() {
-        cancel();
+    private void setTracked(boolean tracked) {
+        if (mTracked != tracked) {
+            mTracked = tracked;
+            if (tracked) {
+                RippleTracker.begin(this);
+            } else {
+                RippleTracker.end(this);
+            }
+        }
+    }
 
-        mSoftwareAnimator = createSoftwareExit();
-        mSoftwareAnimator.start();
+    @Override
+    public int getAnimatingCount() {
+        return mTracked ? 1 : 0;
     }
 
+    @Override
+    public void endOldest() {
+        end();
+    }
+
+    @Override
+    public long getStaleTime() {
+        // Animators end on their own, drawn or not.
+        return Long.MAX_VALUE;
+    }
+
+    private final AnimatorListenerAdapter mTrackingListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // Canceled animations end too.
+            setTracked(false);
+        }
+    };
+
     /**
      * Cancels all animations. Software animation values are left in the
      * current state, while hardware animation values jump to the end state.
@@ -116,6 +180,14 @@ abstract class RippleComponent {
         endSoftwareAnimations();
     }
 
+    /**
+     * @return {@code true} if a software animation has been started and has
+     *         not finished yet
+     */
+    public boolean isAnimating() {
+        return mSoftwareAnimator != null && mSoftwareAnimator.isStarted();
+    }
+
     /**
      * Draws the ripple to the canvas, inheriting the paint's color and alpha
      * properties.
@@ -162,18 +234,25 @@ abstract class RippleComponent {
         }
     }
 
+    protected final boolean canDisplay() {
+        return mOwner.canDisplay();
+    }
+
+    /**
+     * @return {@code true} if {@code opacity} rounds to a fully transparent
+     *         paint with the owner's current color
+     */
+    protected final boolean isInvisible(float opacity) {
+        return RippleMath.isInvisible(mOwner.getRippleAlpha(), opacity);
+    }
+
     protected final void invalidateSelf() {
         mOwner.invalidateSelf();
     }
 
     protected final void onHotspotBoundsChanged() {
         if (!mHasMaxRadius) {
-            final float halfWidth = mBounds.width() / 2.0f;
-            final float halfHeight = mBounds.height() / 2.0f;
-            final float targetRadius = (float) Math.sqrt(halfWidth * halfWidth
-                    + halfHeight * halfHeight);
-
-            onTargetRadiusChanged(targetRadius);
+            onTargetRadiusChanged(getTargetRadius(mBounds));
         }
     }
 
@@ -188,7 +267,11 @@ abstract class RippleComponent {
 
     protected abstract Animator createSoftwareEnter(boolean fast);
 
-    protected abstract Animator createSoftwareExit();
+    /**
+     * Sets the software animation values to the end state of the enter
+     * animation without running it.
+     */
+    protected abstract void jumpToEnterEnd();
 
     protected abstract boolean drawSoftware(Canvas c, Paint p);
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * On-screen overlay showing what each compat ripple drawable costs: its
+ * dirty rect, its active and exiting ripple counts and how long its last
+ * draw took. Only accessed on the UI thread.
+ * <p>
+ * The draw time is taken before the overlay is drawn, and the overlay is
+ * drawn inside the dirty rect without invalidating anything, so it doesn't
+ * change what it measures.
+ */
+final class RippleDebug {
+    private RippleDebug() {}
+
+    static boolean sEnabled;
+
+    private static Paint sBoundsPaint;
+    private static Paint sTextPaint;
+    private static final StringBuilder sText = new StringBuilder();
+
+    /**
+     * Draws the overlay for one drawable.
+     *
+     * @param dirty the dirty bounds the drawable was drawn with
+     * @param active the number of active ripples
+     * @param exiting the number of exiting ripples
+     * @param drawNanos how long the drawable took to draw, in ns
+     */
+    static void draw(Canvas canvas, Rect dirty, int active, int exiting, long drawNanos) {
+        if (sBoundsPaint == null) {
+            final float density = Resources.getSystem().getDisplayMetrics().density;
+
+            sBoundsPaint = new Paint();
+            sBoundsPaint.setStyle(Paint.Style.STROKE);
+            sBoundsPaint.setStrokeWidth(density);
+            sBoundsPaint.setColor(Color.RED);
+
+            sTextPaint = new Paint();
+            sTextPaint.setAntiAlias(true);
+            sTextPaint.setTextSize(10 * density);
+            sTextPaint.setColor(Color.RED);
+        }
+
+        canvas.drawRect(dirty, sBoundsPaint);
+
+        final StringBuilder text = sText;
+        text.setLength(0);
+        text.append("a:").append(active)
+                .append(" e:").append(exiting)
+                .append(' ').append(drawNanos / 1000).append("us");
+        canvas.drawText(text, 0, text.length(),
+                dirty.left + sBoundsPaint.getStrokeWidth(),
+                dirty.top - sTextPaint.ascent(), sTextPaint);
+    }
+}
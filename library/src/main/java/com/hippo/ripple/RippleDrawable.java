@@ -26,12 +26,19 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
-
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+
+import com.hippo.hotspot.Hotspot;
 import com.hippo.hotspot.Hotspotable;
 
-import java.util.Arrays;
-
 // android-7.0.0_r1
 
 /**
@@ -80,26 +87,52 @@ import java.util.Arrays;
  * &ltripple android:color="#ffff0000" /></code>
  * </pre>
  */
-class RippleDrawable extends Drawable implements Hotspotable {
+class RippleDrawable extends Drawable implements Hotspotable, View.OnAttachStateChangeListener,
+        ViewTreeObserver.OnScrollChangedListener, RippleTracker.Animation {
     /**
      * Radius value that specifies the ripple radius should be computed based
      * on the size of the ripple's container.
      */
-    public static final int RADIUS_AUTO = -1;
+    public static final int RADIUS_AUTO = RippleSpec.RADIUS_AUTO;
 
-    /** The maximum number of ripples supported. */
-    private static final int MAX_RIPPLES = 10;
+    /**
+     * Focus moving faster than this, in ms, is considered a traversal, like
+     * holding a D-pad key. Items passed by then skip background animations.
+     */
+    private static final int FOCUS_TRAVERSAL_WINDOW = 200;
 
-    private final Rect mTempRect = new Rect();
+    /**
+     * Draws after the release of an uncertain press at which it's taken for
+     * a tap: the one of the release frame, and the one of the next frame,
+     * by which a scroll that canceled the press has been reported.
+     */
+    static final int UNCERTAIN_RELEASE_DRAWS = 2;
+
+    /** Time any drawable of the process last gained focus. */
+    private static long sLastFocusTime;
 
-    /** Current ripple effect bounds, used to constrain ripple effects. */
-    private final Rect mHotspotBounds = new Rect();
+    /**
+     * Whether presses of drawables installed on a view wait for the tap
+     * timeout, and are dropped if anything scrolls meanwhile.
+     */
+    static boolean sScrollAware;
+
+    // Scratch state is only allocated once needed, and dropped when idle.
+    // Thousands of idle drawables may sit in recycled views.
+
+    private Rect mTempRect;
+
+    /**
+     * Current ripple effect bounds, used to constrain ripple effects, if
+     * overridden. Otherwise the drawable bounds are used.
+     */
+    private Rect mHotspotBounds;
 
     /** Current drawing bounds, used to compute dirty region. */
-    private final Rect mDrawingBounds = new Rect();
+    private Rect mDrawingBounds;
 
     /** Current dirty bounds, union of current and previous drawing bounds. */
-    private final Rect mDirtyBounds = new Rect();
+    private Rect mDirtyBounds;
 
     /** The current background. May be actively animating or pending entry. */
     private RippleBackground mBackground;
@@ -107,23 +140,65 @@ class RippleDrawable extends Drawable implements Hotspotable {
     /** Whether we expect to draw a background when visible. */
     private boolean mBackgroundActive;
 
+    // Identity of this drawable in the current trace recording.
+    int mTraceSession;
+    int mTraceId;
+
+    /** Whether the focused state is set, and when it was last set. */
+    private boolean mFocused;
+    private long mFocusTime;
+
     /** The current ripple. May be actively animating or pending entry. */
     private RippleForeground mRipple;
 
     /** Whether we expect to draw a ripple when visible. */
     private boolean mRippleActive;
 
+    // State changes that are awaiting the next draw, which resolves them
+    // into their net transition.
+    private boolean mStatePending;
+    private boolean mPendingRippleActive;
+    private boolean mPendingBackgroundFocused;
+    private boolean mPendingTraversal;
+
+    /** Whether the ripple was pressed and released while pending. */
+    private boolean mPendingTap;
+
+    // A press that may still turn out to be the start of a scroll, and
+    // whether the current press was dropped because of a scroll.
+    private boolean mUncertainPress;
+    private boolean mPressDropped;
+    private Runnable mConfirmPress;
+
+    /**
+     * Draws left before the release of an uncertain press is taken for a
+     * tap, or 0 if there is no such release.
+     */
+    private int mUncertainRelease;
+
+    // Position of the host view in its window when the uncertain press began.
+    private int mPressLeft;
+    private int mPressTop;
+
+    /** Scratch location, only used on the UI thread. */
+    private static final int[] sLocation = new int[2];
+
     // Hotspot coordinates that are awaiting activation.
     private float mPendingX;
     private float mPendingY;
     private boolean mHasPending;
 
+    /** Whether the active ripple should move to the pending coordinates. */
+    private boolean mHasPendingMove;
+
     /**
      * Lazily-created array of actively animating ripples. Inactive ripples are
      * pruned during draw(). The locations of these will not change.
      */
-    private RippleForeground[] mExitingRipples;
-    private int mExitingRipplesCount = 0;
+    private ExitingRipples mExitingRipples;
+
+    /** Whether exiting ripples are counted by {@link RippleTracker}. */
+    private boolean mExitingTracked;
 
     /** Paint used to control appearance of ripples. */
     private Paint mRipplePaint;
@@ -134,20 +209,65 @@ class RippleDrawable extends Drawable implements Hotspotable {
     /** Whether bounds are being overridden. */
     private boolean mOverrideBounds;
 
-    private int mMaxRadius = RADIUS_AUTO;
+    /** Whether the host view, if any, is attached to a window. */
+    private boolean mAttached = true;
+
+    /** Host view that still has to be registered with {@link Hotspot}. */
+    private View mPendingHotspotView;
+
+    /** The view this drawable is installed on, if any. */
+    private View mHostView;
+
+    /** Dispatcher feeding hotspots instead of {@link Hotspot}, if any. */
+    private RippleWindowDispatcher mDispatcher;
+
+    /** Target registered with {@link Hotspot}, if any. */
+    private HotspotTarget mHotspotTarget;
+
+    /** Timing and physics constants, shared with other drawables. */
+    private final RippleSpec mSpec;
+
+    private int mMaxRadius;
     private ColorStateList mColor;
     private final Drawable mContent;
 
+    /** Whether ripples are constrained to the drawable bounds. */
+    private final boolean mBounded;
+
+    /**
+     * Target radius of bounded ripples, picked once so that ripples of the
+     * same spot end on the same circle and can be drawn as one.
+     */
+    private final float mBoundedRadius;
+
     RippleDrawable(Context context, ColorStateList color, Drawable content) {
+        this(context, color, content, content != null, RippleSpec.MATERIAL);
+    }
+
+    RippleDrawable(Context context, ColorStateList color, Drawable content, boolean bounded,
+            RippleSpec spec) {
         mDensity = context.getResources().getDisplayMetrics().densityDpi;
         mColor = color;
         mContent = content;
+        mBounded = bounded;
+        mSpec = spec;
+        mMaxRadius = spec.getMaxRadius();
+
+        if (bounded) {
+            final float maxBoundedRadius = spec.getMaxBoundedRadius();
+            mBoundedRadius = maxBoundedRadius * 0.9f
+                    + (float) (maxBoundedRadius * Math.random() * 0.1);
+        } else {
+            mBoundedRadius = 0;
+        }
     }
 
     @Override
     public void jumpToCurrentState() {
         super.jumpToCurrentState();
 
+        resolveState();
+
         if (mRipple != null) {
             mRipple.end();
         }
@@ -160,16 +280,10 @@ class RippleDrawable extends Drawable implements Hotspotable {
     }
 
     private void cancelExitingRipples() {
-        final int count = mExitingRipplesCount;
-        final RippleForeground[] ripples = mExitingRipples;
-        for (int i = 0; i < count; i++) {
-            ripples[i].end();
+        if (mExitingRipples != null) {
+            mExitingRipples.clear();
         }
-
-        if (ripples != null) {
-            Arrays.fill(ripples, 0, count, null);
-        }
-        mExitingRipplesCount = 0;
+        setExitingTracked(false);
 
         // Always draw an additional "clean" frame after canceling animations.
         invalidateSelf();
@@ -212,12 +326,235 @@ class RippleDrawable extends Drawable implements Hotspotable {
             }
         }
 
-        setRippleActive(enabled && pressed);
-        setBackgroundActive(hovered || focused || (enabled && pressed), focused || hovered);
+        if (RippleTraceRecorder.sRecording) {
+            RippleTraceRecorder.recordState(this,
+                    (enabled ? RippleTraceRecorder.STATE_ENABLED : 0)
+                    | (pressed ? RippleTraceRecorder.STATE_PRESSED : 0)
+                    | (focused ? RippleTraceRecorder.STATE_FOCUSED : 0)
+                    | (hovered ? RippleTraceRecorder.STATE_HOVERED : 0));
+        }
+
+        // Only focus alone may skip the background animation.
+        final boolean traversal = isFocusTraversal(focused) && !hovered && !(enabled && pressed);
+
+        final boolean rippleActive = enabled && pressed;
+        if (mDispatcher != null && mPendingRippleActive != rippleActive) {
+            // Before the ripple enters, so it gets the hotspot first.
+            mDispatcher.onPressedChanged(this, rippleActive);
+        }
+
+        if (mPendingRippleActive != rippleActive) {
+            if (rippleActive) {
+                if (mUncertainRelease != 0) {
+                    // Pressed again, the last release was a tap after all.
+                    endUncertainPress();
+                    mPendingTap = true;
+                }
+                if (sScrollAware && mHostView != null && canDisplay()
+                        && !isInScrollingContainer(mHostView)) {
+                    startUncertainPress();
+                }
+            } else if (mUncertainPress) {
+                // Containers cancel the press as soon as a drag starts, but
+                // the scroll is only reported when the next frame is drawn.
+                // Wait for it before taking the release for a tap.
+                mUncertainPress = false;
+                unscheduleSelf(mConfirmPress);
+                mUncertainRelease = UNCERTAIN_RELEASE_DRAWS;
+                mPressDropped = false;
+            } else {
+                if (!mRippleActive && !mPressDropped) {
+                    // Released before the press was drawn.
+                    mPendingTap = true;
+                }
+                mPressDropped = false;
+            }
+        }
+        mPendingRippleActive = rippleActive;
+        mPendingBackgroundFocused = focused || hovered;
+        if (hovered || (enabled && pressed)) {
+            mPendingTraversal = false;
+        } else if (traversal) {
+            // Kept until resolved, other state changes may follow this frame.
+            mPendingTraversal = true;
+        }
+
+        requestResolveState();
 
         return changed;
     }
 
+    /**
+     * @return {@code true} if the ripple should show as pressed
+     */
+    private boolean isPressApplied() {
+        return mPendingRippleActive && !mUncertainPress && !mPressDropped;
+    }
+
+    private void requestResolveState() {
+        if (!canDisplay()) {
+            // Nothing animates anyway.
+            resolveState();
+        } else if (!mStatePending && (mPendingTap || mUncertainRelease != 0
+                || isPressApplied() != mRippleActive
+                || (isPressApplied() || mPendingBackgroundFocused) != mBackgroundActive)) {
+            // Several changes often arrive within one frame, like a quick tap
+            // or a press canceled by a scroll. Only start animations for the
+            // net change once the frame is drawn.
+            mStatePending = true;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Holds a press back for the tap timeout. The hotspot is kept pending,
+     * and nothing animates or invalidates unless the press is confirmed.
+     */
+    private void startUncertainPress() {
+        if (mConfirmPress == null) {
+            mConfirmPress = new Runnable() {
+                @Override
+                public void run() {
+                    if (mUncertainPress) {
+                        endUncertainPress();
+                        requestResolveState();
+                    }
+                }
+            };
+        }
+
+        mUncertainPress = true;
+        mHostView.getLocationInWindow(sLocation);
+        mPressLeft = sLocation[0];
+        mPressTop = sLocation[1];
+        mHostView.getViewTreeObserver().addOnScrollChangedListener(this);
+        scheduleSelf(mConfirmPress, SystemClock.uptimeMillis() + ViewConfiguration.getTapTimeout());
+    }
+
+    /**
+     * @return {@code true} if a parent of {@code v} already delays the
+     *         pressed state of its children for the tap timeout
+     */
+    private static boolean isInScrollingContainer(View v) {
+        ViewParent p = v.getParent();
+        while (p instanceof ViewGroup) {
+            if (((ViewGroup) p).shouldDelayChildPressedState()) {
+                return true;
+            }
+            p = p.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the host view moved in its window since the
+     *         uncertain press began
+     */
+    private boolean hasHostMoved() {
+        mHostView.getLocationInWindow(sLocation);
+        return sLocation[0] != mPressLeft || sLocation[1] != mPressTop;
+    }
+
+    private void endUncertainPress() {
+        if (mUncertainPress || mUncertainRelease != 0) {
+            mUncertainPress = false;
+            mUncertainRelease = 0;
+            unscheduleSelf(mConfirmPress);
+            final ViewTreeObserver observer = mHostView.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(this);
+            }
+        }
+    }
+
+    @Override
+    public void onScrollChanged() {
+        if (!mUncertainPress && mUncertainRelease == 0) {
+            return;
+        }
+
+        // Anything in the window may have scrolled, like a pager advancing
+        // on its own. Only a scroll that moved the host view drops its press.
+        if (hasHostMoved()) {
+            // The press was the start of a scroll. Drop it without a trace.
+            mPressDropped = mUncertainPress;
+            endUncertainPress();
+        }
+    }
+
+    /**
+     * Applies the state changes since the last call.
+     */
+    private void resolveState() {
+        mStatePending = false;
+
+        if (mUncertainRelease != 0) {
+            if (!canDisplay() || hasHostMoved()) {
+                // The release ended a scroll, or nobody would see the tap.
+                endUncertainPress();
+            } else if (mUncertainRelease > 1) {
+                mUncertainRelease--;
+                mStatePending = true;
+                invalidateSelf();
+            } else {
+                endUncertainPress();
+                mPendingTap = true;
+            }
+        }
+
+        if (mPendingTap) {
+            mPendingTap = false;
+            if (!mRippleActive) {
+                tapRipple();
+            }
+        }
+
+        final boolean pressed = isPressApplied();
+        setRippleActive(pressed);
+        setBackgroundActive(pressed || mPendingBackgroundFocused, mPendingBackgroundFocused,
+                mPendingTraversal);
+        mPendingTraversal = false;
+    }
+
+    /**
+     * Shows a tap that was over before it could be drawn: the ripple exits
+     * right away and the background only runs its exit animation.
+     */
+    private void tapRipple() {
+        if (!mBackgroundActive && !mPendingBackgroundFocused) {
+            ensureBackground();
+            mBackground.exit();
+        }
+
+        if (createRipple()) {
+            tryRippleExit();
+        }
+    }
+
+    /**
+     * Records a change of the focused state.
+     *
+     * @return {@code true} if it changed as part of a rapid focus traversal:
+     *         focus arrived right after it arrived elsewhere, or it leaves
+     *         right after it arrived
+     */
+    private boolean isFocusTraversal(boolean focused) {
+        if (mFocused == focused) {
+            return false;
+        }
+        mFocused = focused;
+
+        final long now = SystemClock.uptimeMillis();
+        if (focused) {
+            final boolean traversal = now - sLastFocusTime < FOCUS_TRAVERSAL_WINDOW;
+            sLastFocusTime = now;
+            mFocusTime = now;
+            return traversal;
+        } else {
+            return now - mFocusTime < FOCUS_TRAVERSAL_WINDOW;
+        }
+    }
+
     private void setRippleActive(boolean active) {
         if (mRippleActive != active) {
             mRippleActive = active;
@@ -229,10 +566,12 @@ class RippleDrawable extends Drawable implements Hotspotable {
         }
     }
 
-    private void setBackgroundActive(boolean active, boolean focused) {
+    private void setBackgroundActive(boolean active, boolean focused, boolean jump) {
         if (mBackgroundActive != active) {
             mBackgroundActive = active;
-            if (active) {
+            if (jump) {
+                jumpBackground(active);
+            } else if (active) {
                 tryBackgroundEnter(focused);
             } else {
                 tryBackgroundExit();
@@ -244,8 +583,18 @@ class RippleDrawable extends Drawable implements Hotspotable {
     protected void onBoundsChange(Rect bounds) {
         super.onBoundsChange(bounds);
 
+        if (RippleTraceRecorder.sRecording) {
+            RippleTraceRecorder.recordBounds(this, bounds);
+        }
+
         if (!mOverrideBounds) {
-            mHotspotBounds.set(bounds);
+            // Bounds may be a new object if they were never set before.
+            if (mBackground != null) {
+                mBackground.setBounds(bounds);
+            }
+            if (mRipple != null) {
+                mRipple.setBounds(bounds);
+            }
             onHotspotBoundsChanged();
         }
 
@@ -288,8 +637,149 @@ class RippleDrawable extends Drawable implements Hotspotable {
         return changed;
     }
 
-    private boolean isBounded() {
-        return mContent != null;
+    /**
+     * Installs this drawable on {@code v}: follows its attach state and feeds
+     * it touch hotspots. May be called on any thread. Anything that needs the
+     * UI thread is deferred until {@code v} is attached.
+     *
+     * @param previous the drawable this one replaces on {@code v}, if any
+     */
+    void attachTo(View v, Drawable previous) {
+        if (previous instanceof RippleDrawable) {
+            ((RippleDrawable) previous).detachFrom(v);
+        }
+
+        mHostView = v;
+        v.addOnAttachStateChangeListener(this);
+
+        if (Looper.myLooper() == Looper.getMainLooper() && v.getWindowToken() != null) {
+            registerHotspot(v);
+        } else {
+            mAttached = false;
+            mPendingHotspotView = v;
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        if (mPendingHotspotView == v) {
+            mPendingHotspotView = null;
+            registerHotspot(v);
+        } else if (mDispatcher != null) {
+            // The view may have moved to another window.
+            registerHotspot(v);
+        }
+
+        if (!mAttached) {
+            mAttached = true;
+
+            // Re-arm for whatever state survived the detach, skipping animations.
+            onStateChange(getState());
+            jumpToCurrentState();
+        }
+    }
+
+    /**
+     * Gets hotspots for {@code v} from the dispatcher of its window if it has
+     * one, or from a touch listener on {@code v} otherwise. Must be called
+     * while {@code v} is attached.
+     */
+    private void registerHotspot(View v) {
+        mDispatcher = RippleWindowDispatcher.get(v.getRootView());
+        if (mDispatcher == null) {
+            if (mHotspotTarget == null) {
+                mHotspotTarget = new HotspotTarget(this);
+                Hotspot.addHotspotable(v, mHotspotTarget);
+            }
+        } else if (mPendingRippleActive) {
+            mDispatcher.onPressedChanged(this, true);
+        }
+    }
+
+    /**
+     * Stops following {@code v} after another drawable took its place. The
+     * view keeps nothing but an empty hotspot target.
+     */
+    private void detachFrom(View v) {
+        if (mHostView != v) {
+            return;
+        }
+
+        clearHotspots();
+        v.removeOnAttachStateChangeListener(this);
+        if (mDispatcher != null) {
+            mDispatcher.onPressedChanged(this, false);
+            mDispatcher = null;
+        }
+        if (mHotspotTarget != null) {
+            mHotspotTarget.mDrawable = null;
+            mHotspotTarget = null;
+        }
+        mPendingHotspotView = null;
+        mHostView = null;
+    }
+
+    /**
+     * Forwards hotspots from {@link Hotspot}, which can't unregister, to a
+     * drawable until it's detached from the view.
+     */
+    private static final class HotspotTarget implements Hotspotable {
+        RippleDrawable mDrawable;
+
+        HotspotTarget(RippleDrawable drawable) {
+            mDrawable = drawable;
+        }
+
+        @Override
+        public void setHotspot(float x, float y) {
+            if (mDrawable != null) {
+                mDrawable.setHotspot(x, y);
+            }
+        }
+    }
+
+    View getHostView() {
+        return mHostView;
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        if (mDispatcher != null) {
+            mDispatcher.onPressedChanged(this, false);
+        }
+
+        if (mAttached) {
+            mAttached = false;
+
+            // Nobody will see the animations, end them now and drop the
+            // lazily-created state. It will be recreated on demand.
+            clearHotspots();
+            mExitingRipples = null;
+            mRipplePaint = null;
+        }
+    }
+
+    /**
+     * @return {@code true} if something drawn by this drawable can currently
+     *         reach the screen, {@code false} if animating it would be wasted
+     */
+    boolean canDisplay() {
+        return mAttached && isVisible() && getCallback() != null;
+    }
+
+    boolean isBounded() {
+        return mBounded;
+    }
+
+    /**
+     * @return {@code true} if nothing is active, animating or visible, so
+     *         this drawable would draw nothing but its content
+     */
+    boolean isIdle() {
+        return !mStatePending && !mRippleActive && !mBackgroundActive && mRipple == null
+                && (mExitingRipples == null || mExitingRipples.size() == 0)
+                && (mBackground == null
+                        || (!mBackground.isVisible() && !mBackground.isAnimating()));
     }
 
     @Override
@@ -329,14 +819,33 @@ class RippleDrawable extends Drawable implements Hotspotable {
 
     @Override
     public void setHotspot(float x, float y) {
+        if (RippleTraceRecorder.sRecording) {
+            RippleTraceRecorder.recordHotspot(this, x, y);
+        }
+
+        // Touch and hover may report several positions per frame, only keep
+        // the latest one and move the ripple when it's about to be drawn.
+        mPendingX = x;
+        mPendingY = y;
+
         if (mRipple == null || mBackground == null) {
-            mPendingX = x;
-            mPendingY = y;
             mHasPending = true;
         }
 
         if (mRipple != null) {
-            mRipple.move(x, y);
+            mHasPendingMove = true;
+        }
+    }
+
+    /**
+     * Moves the active ripple to the latest hotspot coordinates, if any.
+     */
+    private void applyPendingMove() {
+        if (mHasPendingMove) {
+            mHasPendingMove = false;
+            if (mRipple != null) {
+                mRipple.move(mPendingX, mPendingY);
+            }
         }
     }
 
@@ -344,13 +853,30 @@ class RippleDrawable extends Drawable implements Hotspotable {
      * Creates an active hotspot at the specified location.
      */
     private void tryBackgroundEnter(boolean focused) {
+        ensureBackground();
+        mBackground.enter(focused);
+    }
+
+    private void ensureBackground() {
         if (mBackground == null) {
             final boolean isBounded = isBounded();
-            mBackground = new RippleBackground(this, mHotspotBounds, isBounded);
+            mBackground = new RippleBackground(this, getHotspotBoundsRect(), mSpec, isBounded);
         }
 
         mBackground.setup(mMaxRadius, mDensity);
-        mBackground.enter(focused);
+    }
+
+    /**
+     * Shows or hides the background without animating it.
+     */
+    private void jumpBackground(boolean visible) {
+        if (visible) {
+            ensureBackground();
+        }
+
+        if (mBackground != null) {
+            mBackground.jump(visible);
+        }
     }
 
     private void tryBackgroundExit() {
@@ -365,10 +891,21 @@ class RippleDrawable extends Drawable implements Hotspotable {
      * there are too many animating ripples.
      */
     private void tryRippleEnter() {
-        if (mExitingRipplesCount >= MAX_RIPPLES) {
+        if (createRipple()) {
+            mRipple.enter(false);
+        }
+    }
+
+    /**
+     * Creates the active ripple if needed, at the pending hotspot if any.
+     *
+     * @return {@code false} if there are too many animating ripples
+     */
+    private boolean createRipple() {
+        if (mExitingRipples != null && mExitingRipples.isFull()) {
             // This should never happen unless the user is tapping like a maniac
             // or there is a bug that's preventing ripples from being removed.
-            return;
+            return false;
         }
 
         if (mRipple == null) {
@@ -379,16 +916,17 @@ class RippleDrawable extends Drawable implements Hotspotable {
                 x = mPendingX;
                 y = mPendingY;
             } else {
-                x = mHotspotBounds.exactCenterX();
-                y = mHotspotBounds.exactCenterY();
+                x = getHotspotBoundsRect().exactCenterX();
+                y = getHotspotBoundsRect().exactCenterY();
             }
 
             final boolean isBounded = isBounded();
-            mRipple = new RippleForeground(this, mHotspotBounds, x, y, isBounded);
+            mRipple = new RippleForeground(this, getHotspotBoundsRect(), mSpec, x, y, isBounded,
+                    mBoundedRadius);
         }
 
         mRipple.setup(mMaxRadius, mDensity);
-        mRipple.enter(false);
+        return true;
     }
 
     /**
@@ -397,12 +935,21 @@ class RippleDrawable extends Drawable implements Hotspotable {
      */
     private void tryRippleExit() {
         if (mRipple != null) {
+            applyPendingMove();
+
             if (mExitingRipples == null) {
-                mExitingRipples = new RippleForeground[MAX_RIPPLES];
+                mExitingRipples = new ExitingRipples(mSpec.getMaxRipples());
             }
-            mExitingRipples[mExitingRipplesCount++] = mRipple;
-            mRipple.exit();
+            mRipple.exit(mExitingRipples, AnimationUtils.currentAnimationTimeMillis());
             mRipple = null;
+            if (mExitingTracked) {
+                RippleTracker.enforceBudget();
+            } else {
+                setExitingTracked(mExitingRipples.size() > 0);
+            }
+
+            // Exiting ripples are animated by draw().
+            invalidateSelf();
         }
     }
 
@@ -411,10 +958,23 @@ class RippleDrawable extends Drawable implements Hotspotable {
      * background. Nothing will be drawn after this method is called.
      */
     private void clearHotspots() {
+        mStatePending = false;
+        mPendingTap = false;
+        // Forget the press, or its release would be taken for a tap.
+        if (mPendingRippleActive) {
+            mPendingRippleActive = false;
+            if (mDispatcher != null) {
+                mDispatcher.onPressedChanged(this, false);
+            }
+        }
+        endUncertainPress();
+        mPressDropped = false;
+
         if (mRipple != null) {
             mRipple.end();
             mRipple = null;
             mRippleActive = false;
+            mHasPendingMove = false;
         }
 
         if (mBackground != null) {
@@ -428,6 +988,15 @@ class RippleDrawable extends Drawable implements Hotspotable {
 
     @Override
     public void setHotspotBounds(int left, int top, int right, int bottom) {
+        if (mHotspotBounds == null) {
+            mHotspotBounds = new Rect();
+            if (mBackground != null) {
+                mBackground.setBounds(mHotspotBounds);
+            }
+            if (mRipple != null) {
+                mRipple.setBounds(mHotspotBounds);
+            }
+        }
         mOverrideBounds = true;
         mHotspotBounds.set(left, top, right, bottom);
 
@@ -436,19 +1005,21 @@ class RippleDrawable extends Drawable implements Hotspotable {
 
     @Override
     public void getHotspotBounds(@NonNull Rect outRect) {
-        outRect.set(mHotspotBounds);
+        outRect.set(getHotspotBoundsRect());
+    }
+
+    /**
+     * @return the hotspot bounds override if any, the drawable bounds
+     *         otherwise. Components keep a reference to it.
+     */
+    private Rect getHotspotBoundsRect() {
+        return mOverrideBounds ? mHotspotBounds : getBounds();
     }
 
     /**
      * Notifies all the animating ripples that the hotspot bounds have changed.
      */
     private void onHotspotBoundsChanged() {
-        final int count = mExitingRipplesCount;
-        final RippleForeground[] ripples = mExitingRipples;
-        for (int i = 0; i < count; i++) {
-            ripples[i].onHotspotBoundsChanged();
-        }
-
         if (mRipple != null) {
             mRipple.onHotspotBoundsChanged();
         }
@@ -463,7 +1034,14 @@ class RippleDrawable extends Drawable implements Hotspotable {
      */
     @Override
     public void draw(@NonNull Canvas canvas) {
-        pruneRipples();
+        final boolean debug = RippleDebug.sEnabled;
+        final long startNanos = debug ? System.nanoTime() : 0;
+
+        if (mStatePending) {
+            resolveState();
+        }
+        applyPendingMove();
+        final boolean exiting = pruneRipples();
 
         // Clip to the dirty bounds, which will be the drawable bounds if we
         // have a mask or content and the ripple bounds if we're projecting.
@@ -475,26 +1053,90 @@ class RippleDrawable extends Drawable implements Hotspotable {
         drawBackgroundAndRipples(canvas);
 
         canvas.restoreToCount(saveCount);
+
+        if (debug) {
+            // Measure before drawing the overlay itself.
+            final long drawNanos = System.nanoTime() - startNanos;
+            RippleDebug.draw(canvas, bounds, mRipple != null ? 1 : 0,
+                    mExitingRipples != null ? mExitingRipples.size() : 0, drawNanos);
+        }
+
+        if (exiting) {
+            // Keep exiting ripples moving on the next frame.
+            invalidateSelf();
+        } else if (isIdle()) {
+            releaseIdleState();
+        }
+    }
+
+    /**
+     * Drops the components and scratch state of an idle drawable, leaving
+     * only its configuration and bounds. They are recreated on demand.
+     */
+    private void releaseIdleState() {
+        mBackground = null;
+        mExitingRipples = null;
+        mRipplePaint = null;
+
+        // This frame drew nothing, and the invalidation that led to it
+        // already covered what the previous frame drew. Nothing is left to
+        // clean up outside the bounds, even if an invisible background still
+        // counted in the drawing bounds.
+        mTempRect = null;
+        mDrawingBounds = null;
+        mDirtyBounds = null;
     }
 
-    private void pruneRipples() {
-        int remaining = 0;
+    /**
+     * Advances the exiting ripples to the current animation time and removes
+     * the finished ones.
+     *
+     * @return {@code true} if any ripple is still exiting
+     */
+    private boolean pruneRipples() {
+        final boolean exiting = mExitingRipples != null
+                && mExitingRipples.update(AnimationUtils.currentAnimationTimeMillis(),
+                getRippleAlpha());
+        setExitingTracked(exiting);
+        return exiting;
+    }
 
-        // Move remaining entries into pruned spaces.
-        final RippleForeground[] ripples = mExitingRipples;
-        final int count = mExitingRipplesCount;
-        for (int i = 0; i < count; i++) {
-            if (!ripples[i].hasFinishedExit()) {
-                ripples[remaining++] = ripples[i];
+    private void setExitingTracked(boolean tracked) {
+        if (mExitingTracked != tracked) {
+            mExitingTracked = tracked;
+            if (tracked) {
+                RippleTracker.begin(this);
+            } else {
+                RippleTracker.end(this);
             }
         }
+    }
+
+    @Override
+    public int getAnimatingCount() {
+        return mExitingTracked ? mExitingRipples.size() : 0;
+    }
 
-        // Null out the remaining entries.
-        for (int i = remaining; i < count; i++) {
-            ripples[i] = null;
+    @Override
+    public long getStaleTime() {
+        if (!mExitingTracked) {
+            return Long.MAX_VALUE;
         }
+        // Exiting ripples only advance when drawn. Without a callback nobody
+        // will draw them, and past their end they'd have been pruned by any
+        // draw, so this drawable isn't drawn anymore.
+        return getCallback() == null ? Long.MIN_VALUE : mExitingRipples.getEndTime();
+    }
 
-        mExitingRipplesCount = remaining;
+    @Override
+    public void endOldest() {
+        if (mExitingRipples != null) {
+            mExitingRipples.removeOldest();
+            if (mExitingRipples.size() == 0) {
+                setExitingTracked(false);
+            }
+        }
+        invalidateSelf();
     }
 
     private void drawContent(Canvas canvas) {
@@ -506,14 +1148,15 @@ class RippleDrawable extends Drawable implements Hotspotable {
     private void drawBackgroundAndRipples(Canvas canvas) {
         final RippleForeground active = mRipple;
         final RippleBackground background = mBackground;
-        final int count = mExitingRipplesCount;
+        final int count = mExitingRipples != null ? mExitingRipples.size() : 0;
         if (active == null && count <= 0 && (background == null || !background.isVisible())) {
             // Move along, nothing to draw here.
             return;
         }
 
-        final float x = mHotspotBounds.exactCenterX();
-        final float y = mHotspotBounds.exactCenterY();
+        final Rect hotspotBounds = getHotspotBoundsRect();
+        final float x = hotspotBounds.exactCenterX();
+        final float y = hotspotBounds.exactCenterY();
         canvas.translate(x, y);
 
         // Grab the color for the current state and cut the alpha channel in
@@ -532,10 +1175,7 @@ class RippleDrawable extends Drawable implements Hotspotable {
         }
 
         if (count > 0) {
-            final RippleForeground[] ripples = mExitingRipples;
-            for (int i = 0; i < count; i++) {
-                ripples[i].draw(canvas, p);
-            }
+            mExitingRipples.draw(canvas, p, mSpec);
         }
 
         if (active != null) {
@@ -545,6 +1185,15 @@ class RippleDrawable extends Drawable implements Hotspotable {
         canvas.translate(-x, -y);
     }
 
+    /**
+     * @return the alpha of the ripple paint for the current state, before
+     *         component opacity is applied
+     */
+    int getRippleAlpha() {
+        // Half of the color alpha, as in drawBackgroundAndRipples().
+        return Color.alpha(mColor.getColorForState(getState(), Color.BLACK)) / 2;
+    }
+
     private Paint getRipplePaint() {
         if (mRipplePaint == null) {
             mRipplePaint = new Paint();
@@ -558,21 +1207,29 @@ class RippleDrawable extends Drawable implements Hotspotable {
     @Override
     public Rect getDirtyBounds() {
         if (!isBounded()) {
+            if (mDrawingBounds == null) {
+                if (mRipple == null && mBackground == null
+                        && (mExitingRipples == null || mExitingRipples.size() == 0)) {
+                    // Never drew outside the bounds since going idle.
+                    return getBounds();
+                }
+                mTempRect = new Rect();
+                mDrawingBounds = new Rect();
+                mDirtyBounds = new Rect();
+            }
+
             final Rect drawingBounds = mDrawingBounds;
             final Rect dirtyBounds = mDirtyBounds;
             dirtyBounds.set(drawingBounds);
             drawingBounds.setEmpty();
 
-            final int cX = (int) mHotspotBounds.exactCenterX();
-            final int cY = (int) mHotspotBounds.exactCenterY();
+            final Rect hotspotBounds = getHotspotBoundsRect();
+            final int cX = (int) hotspotBounds.exactCenterX();
+            final int cY = (int) hotspotBounds.exactCenterY();
             final Rect rippleBounds = mTempRect;
 
-            final RippleForeground[] activeRipples = mExitingRipples;
-            final int N = mExitingRipplesCount;
-            for (int i = 0; i < N; i++) {
-                activeRipples[i].getBounds(rippleBounds);
-                rippleBounds.offset(cX, cY);
-                drawingBounds.union(rippleBounds);
+            if (mExitingRipples != null) {
+                mExitingRipples.unionBounds(drawingBounds, cX, cY);
             }
 
             final RippleBackground background = mBackground;
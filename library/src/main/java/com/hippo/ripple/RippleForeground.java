@@ -17,7 +17,6 @@
 package com.hippo.ripple;
 
 import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.TimeInterpolator;
@@ -27,6 +26,9 @@ import android.graphics.Rect;
 import android.os.Build;
 import android.view.animation.LinearInterpolator;
 
+import com.hippo.ripple.core.RippleMath;
+import com.hippo.ripple.core.RippleTiming;
+
 // android-7.0.0_r1
 
 /**
@@ -34,22 +36,6 @@ import android.view.animation.LinearInterpolator;
  */
 class RippleForeground extends RippleComponent {
     private static final TimeInterpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
-    private static final TimeInterpolator DECELERATE_INTERPOLATOR = new LogDecelerateInterpolator(
-            400f, 1.4f, 0);
-
-    // Pixel-based accelerations and velocities.
-    private static final float WAVE_TOUCH_DOWN_ACCELERATION = 1024;
-    private static final float WAVE_TOUCH_UP_ACCELERATION = 3400;
-    private static final float WAVE_OPACITY_DECAY_VELOCITY = 3;
-
-    // Bounded ripple animation properties.
-    private static final int BOUNDED_ORIGIN_EXIT_DURATION = 300;
-    private static final int BOUNDED_RADIUS_EXIT_DURATION = 800;
-    private static final int BOUNDED_OPACITY_EXIT_DURATION = 400;
-    private static final float MAX_BOUNDED_RADIUS = 350;
-
-    private static final int RIPPLE_ENTER_DELAY = 80;
-    private static final int OPACITY_ENTER_DURATION_FAST = 120;
 
     // Parent-relative values for starting position.
     private float mStartingX;
@@ -62,7 +48,7 @@ class RippleForeground extends RippleComponent {
     private float mTargetY = 0;
 
     /** Ripple target radius used when bounded. Not used for clamping. */
-    private float mBoundedRadius = 0;
+    private final float mBoundedRadius;
 
     // Software rendering properties.
     private float mOpacity = 1;
@@ -75,23 +61,18 @@ class RippleForeground extends RippleComponent {
     /** Whether this ripple is bounded. */
     private final boolean mIsBounded;
 
-    /** Whether this ripple has finished its exit animation. */
-    private boolean mHasFinishedExit;
-
-    public RippleForeground(RippleDrawable owner, Rect bounds, float startingX, float startingY,
-            boolean isBounded) {
-        super(owner, bounds);
+    /**
+     * @param boundedRadius the target radius if bounded, shared by the
+     *                      ripples of the owner
+     */
+    public RippleForeground(RippleDrawable owner, Rect bounds, RippleSpec spec,
+            float startingX, float startingY, boolean isBounded, float boundedRadius) {
+        super(owner, bounds, spec);
 
         mIsBounded = isBounded;
         mStartingX = startingX;
         mStartingY = startingY;
-
-        if (isBounded) {
-            mBoundedRadius = MAX_BOUNDED_RADIUS * 0.9f
-                    + (float) (MAX_BOUNDED_RADIUS * Math.random() * 0.1);
-        } else {
-            mBoundedRadius = 0;
-        }
+        mBoundedRadius = isBounded ? boundedRadius : 0;
     }
 
     @Override
@@ -110,6 +91,7 @@ class RippleForeground extends RippleComponent {
             final float x = getCurrentX();
             final float y = getCurrentY();
             p.setAlpha(alpha);
+            p.setAntiAlias(!mSpec.isLowDetail(radius, alpha));
             c.drawCircle(x, y, radius, p);
             p.setAlpha(origAlpha);
             hasContent = true;
@@ -140,13 +122,6 @@ class RippleForeground extends RippleComponent {
         clampStartingPosition();
     }
 
-    /**
-     * @return {@code true} if this ripple has finished its exit animation
-     */
-    public boolean hasFinishedExit() {
-        return mHasFinishedExit;
-    }
-
     @Override
     protected Animator createSoftwareEnter(boolean fast) {
         // Bounded ripples don't have enter animations.
@@ -154,21 +129,21 @@ class RippleForeground extends RippleComponent {
             return null;
         }
 
-        final int duration = (int)
-                (1000 * Math.sqrt(mTargetRadius / WAVE_TOUCH_DOWN_ACCELERATION * mDensityScale) + 0.5);
+        final int duration = RippleTiming.enterDuration(mTargetRadius,
+                mSpec.getWaveTouchDownAcceleration(), mDensityScale);
 
         final ObjectAnimator tweenRadius = ObjectAnimator.ofFloat(this, TWEEN_RADIUS, 1);
         tweenRadius.setDuration(duration);
         tweenRadius.setInterpolator(LINEAR_INTERPOLATOR);
-        tweenRadius.setStartDelay(RIPPLE_ENTER_DELAY);
+        tweenRadius.setStartDelay(mSpec.getRippleEnterDelay());
 
         final ObjectAnimator tweenOrigin = ObjectAnimator.ofFloat(this, TWEEN_ORIGIN, 1);
         tweenOrigin.setDuration(duration);
         tweenOrigin.setInterpolator(LINEAR_INTERPOLATOR);
-        tweenOrigin.setStartDelay(RIPPLE_ENTER_DELAY);
+        tweenOrigin.setStartDelay(mSpec.getRippleEnterDelay());
 
         final ObjectAnimator opacity = ObjectAnimator.ofFloat(this, OPACITY, 1);
-        opacity.setDuration(OPACITY_ENTER_DURATION_FAST);
+        opacity.setDuration(mSpec.getForegroundOpacityEnterDurationFast());
         opacity.setInterpolator(LINEAR_INTERPOLATOR);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
@@ -183,26 +158,39 @@ class RippleForeground extends RippleComponent {
         return set;
     }
 
+    @Override
+    protected void jumpToEnterEnd() {
+        // Bounded ripples don't have enter animations.
+        if (mIsBounded) {
+            return;
+        }
+
+        mTweenRadius = 1;
+        mTweenX = 1;
+        mTweenY = 1;
+        mOpacity = 1;
+    }
+
     private float getCurrentX() {
-        return MathUtils.lerp(mClampedStartingX - mBounds.exactCenterX(), mTargetX, mTweenX);
+        return RippleMath.lerp(mClampedStartingX - mBounds.exactCenterX(), mTargetX, mTweenX);
     }
 
     private float getCurrentY() {
-        return MathUtils.lerp(mClampedStartingY - mBounds.exactCenterY(), mTargetY, mTweenY);
+        return RippleMath.lerp(mClampedStartingY - mBounds.exactCenterY(), mTargetY, mTweenY);
     }
 
     private int getRadiusExitDuration() {
-        final float remainingRadius = mTargetRadius - getCurrentRadius();
-        return (int) (1000 * Math.sqrt(remainingRadius / (WAVE_TOUCH_UP_ACCELERATION
-                + WAVE_TOUCH_DOWN_ACCELERATION) * mDensityScale) + 0.5);
+        return RippleTiming.radiusExitDuration(mTargetRadius - getCurrentRadius(),
+                mSpec.getWaveTouchUpAcceleration(), mSpec.getWaveTouchDownAcceleration(),
+                mDensityScale);
     }
 
     private float getCurrentRadius() {
-        return MathUtils.lerp(0, mTargetRadius, mTweenRadius);
+        return RippleMath.lerp(0, mTargetRadius, mTweenRadius);
     }
 
     private int getOpacityExitDuration() {
-        return (int) (1000 * mOpacity / WAVE_OPACITY_DECAY_VELOCITY + 0.5f);
+        return RippleTiming.opacityExitDuration(mOpacity, mSpec.getWaveOpacityDecayVelocity());
     }
 
     /**
@@ -214,46 +202,40 @@ class RippleForeground extends RippleComponent {
         mTargetRadius = mBoundedRadius;
     }
 
-    @Override
-    protected Animator createSoftwareExit() {
+    /**
+     * Starts the exit animation by handing the current state over to
+     * {@code exiting}, which animates it from {@code startTime} on. This
+     * ripple should be discarded afterwards.
+     */
+    public void exit(ExitingRipples exiting, long startTime) {
+        cancel();
+
+        if (!canDisplay()) {
+            // Nobody would see the animation, just drop the ripple.
+            return;
+        }
+
+        final float startX = mClampedStartingX - mBounds.exactCenterX();
+        final float startY = mClampedStartingY - mBounds.exactCenterY();
+
         final int radiusDuration;
         final int originDuration;
         final int opacityDuration;
         if (mIsBounded) {
             computeBoundedTargetValues();
 
-            radiusDuration = BOUNDED_RADIUS_EXIT_DURATION;
-            originDuration = BOUNDED_ORIGIN_EXIT_DURATION;
-            opacityDuration = BOUNDED_OPACITY_EXIT_DURATION;
+            radiusDuration = mSpec.getBoundedRadiusExitDuration();
+            originDuration = mSpec.getBoundedOriginExitDuration();
+            opacityDuration = mSpec.getBoundedOpacityExitDuration();
         } else {
             radiusDuration = getRadiusExitDuration();
             originDuration = radiusDuration;
             opacityDuration = getOpacityExitDuration();
         }
 
-        final ObjectAnimator tweenRadius = ObjectAnimator.ofFloat(this, TWEEN_RADIUS, 1);
-        tweenRadius.setDuration(radiusDuration);
-        tweenRadius.setInterpolator(DECELERATE_INTERPOLATOR);
-
-        final ObjectAnimator tweenOrigin = ObjectAnimator.ofFloat(this, TWEEN_ORIGIN, 1);
-        tweenOrigin.setDuration(originDuration);
-        tweenOrigin.setInterpolator(DECELERATE_INTERPOLATOR);
-
-        final ObjectAnimator opacity = ObjectAnimator.ofFloat(this, OPACITY, 0);
-        opacity.setDuration(opacityDuration);
-        opacity.setInterpolator(LINEAR_INTERPOLATOR);
-
-        final AnimatorSet set = new AnimatorSet();
-        set.play(tweenOrigin).with(tweenRadius).with(opacity);
-        set.addListener(mAnimationListener);
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
-            tweenRadius.setAutoCancel(true);
-            tweenOrigin.setAutoCancel(true);
-            opacity.setAutoCancel(true);
-        }
-
-        return set;
+        exiting.add(startX, startY, mTargetX, mTargetY, mTargetRadius,
+                mTweenRadius, mTweenX, mOpacity,
+                radiusDuration, originDuration, opacityDuration, startTime);
     }
 
     /**
@@ -264,50 +246,9 @@ class RippleForeground extends RippleComponent {
         final float cY = mBounds.exactCenterY();
         final float dX = mStartingX - cX;
         final float dY = mStartingY - cY;
-        final float r = mTargetRadius;
-        if (dX * dX + dY * dY > r * r) {
-            // Point is outside the circle, clamp to the perimeter.
-            final double angle = Math.atan2(dY, dX);
-            mClampedStartingX = cX + (float) (Math.cos(angle) * r);
-            mClampedStartingY = cY + (float) (Math.sin(angle) * r);
-        } else {
-            mClampedStartingX = mStartingX;
-            mClampedStartingY = mStartingY;
-        }
-    }
-
-    private final AnimatorListenerAdapter mAnimationListener = new AnimatorListenerAdapter() {
-        @Override
-        public void onAnimationEnd(Animator animator) {
-            mHasFinishedExit = true;
-        }
-    };
-
-    /**
-    * Interpolator with a smooth log deceleration.
-    */
-    private static final class LogDecelerateInterpolator implements TimeInterpolator {
-        private final float mBase;
-        private final float mDrift;
-        private final float mTimeScale;
-        private final float mOutputScale;
-
-        public LogDecelerateInterpolator(float base, float timeScale, float drift) {
-            mBase = base;
-            mDrift = drift;
-            mTimeScale = 1f / timeScale;
-
-            mOutputScale = 1f / computeLog(1f);
-        }
-
-        private float computeLog(float t) {
-            return 1f - (float) Math.pow(mBase, -t * mTimeScale) + (mDrift * t);
-        }
-
-        @Override
-        public float getInterpolation(float t) {
-            return computeLog(t) * mOutputScale;
-        }
+        final float scale = RippleMath.clampScale(dX, dY, mTargetRadius);
+        mClampedStartingX = cX + dX * scale;
+        mClampedStartingY = cY + dY * scale;
     }
 
     /**
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+import android.view.View;
+
+/**
+ * Hosts ripples for any number of regions inside one custom-drawn view,
+ * like the cells of a calendar or a grid.
+ * <p>
+ * A region is identified by an id chosen by the caller. It only costs
+ * something while it's pressed, focused or still animating; the ripple
+ * behind it is released as soon as it goes idle. Call {@link #draw(Canvas)}
+ * from the view's {@code onDraw()}. Only the dirty rect of each animating
+ * region is invalidated.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+public final class RippleHost implements Drawable.Callback, View.OnAttachStateChangeListener {
+
+    private static final int[] STATE_ENABLED = {
+            android.R.attr.state_enabled};
+    private static final int[] STATE_PRESSED = {
+            android.R.attr.state_enabled, android.R.attr.state_pressed};
+    private static final int[] STATE_FOCUSED = {
+            android.R.attr.state_enabled, android.R.attr.state_focused};
+    private static final int[] STATE_PRESSED_FOCUSED = {
+            android.R.attr.state_enabled, android.R.attr.state_pressed,
+            android.R.attr.state_focused};
+
+    /** The maximum number of idle drawables kept for reuse. */
+    private static final int MAX_POOL_SIZE = 4;
+
+    private final View mView;
+    private final ColorStateList mColor;
+    private final boolean mBounded;
+    private final RippleSpec mSpec;
+
+    /** Regions that are active or still animating, keyed by region id. */
+    private final SparseArray<Region> mRegions = new SparseArray<Region>();
+
+    private final Region[] mPool = new Region[MAX_POOL_SIZE];
+    private int mPoolSize;
+
+    // Hotspot set for a region without a state, applied if it gets one.
+    private boolean mHasPendingHotspot;
+    private int mPendingHotspotRegion;
+    private float mPendingHotspotX;
+    private float mPendingHotspotY;
+
+    /**
+     * @param view the view that draws the regions
+     * @param color the ripple color
+     * @param bounded whether ripples are clipped to their region bounds
+     */
+    public RippleHost(@NonNull View view, @NonNull ColorStateList color, boolean bounded) {
+        this(view, color, bounded, RippleSpec.MATERIAL);
+    }
+
+    /**
+     * @param view the view that draws the regions
+     * @param color the ripple color
+     * @param bounded whether ripples are clipped to their region bounds
+     * @param spec the timing and physics constants of the ripples
+     */
+    public RippleHost(@NonNull View view, @NonNull ColorStateList color, boolean bounded,
+            @NonNull RippleSpec spec) {
+        mView = view;
+        mColor = color;
+        mBounded = bounded;
+        mSpec = spec;
+        view.addOnAttachStateChangeListener(this);
+    }
+
+    /**
+     * Sets the pressed state of a region. The hotspot should be set first
+     * for the ripple to start at the touch position.
+     *
+     * @param region the region id
+     * @param bounds the region bounds in view coordinates
+     * @param pressed whether the region is pressed
+     */
+    public void setPressed(int region, @NonNull Rect bounds, boolean pressed) {
+        final Region r = obtainRegion(region, bounds, pressed);
+        if (r != null) {
+            r.pressed = pressed;
+            r.updateState();
+        }
+    }
+
+    /**
+     * Sets the focused state of a region.
+     *
+     * @param region the region id
+     * @param bounds the region bounds in view coordinates
+     * @param focused whether the region is focused
+     */
+    public void setFocused(int region, @NonNull Rect bounds, boolean focused) {
+        final Region r = obtainRegion(region, bounds, focused);
+        if (r != null) {
+            r.focused = focused;
+            r.updateState();
+        }
+    }
+
+    /**
+     * Sets the hotspot of a region, in view coordinates.
+     *
+     * @param region the region id
+     * @param bounds the region bounds in view coordinates
+     * @param x the x coordinate of the hotspot
+     * @param y the y coordinate of the hotspot
+     */
+    public void setHotspot(int region, @NonNull Rect bounds, float x, float y) {
+        final Region r = obtainRegion(region, bounds, false);
+        if (r != null) {
+            r.drawable.setHotspot(x, y);
+            // Its ripple moves on the next draw.
+            mView.invalidate(r.drawable.getDirtyBounds());
+        } else {
+            // Hovering or moving over a region costs nothing until it gets
+            // a state.
+            mHasPendingHotspot = true;
+            mPendingHotspotRegion = region;
+            mPendingHotspotX = x;
+            mPendingHotspotY = y;
+        }
+    }
+
+    /**
+     * Jumps all regions to their current state and releases the idle ones.
+     */
+    public void jumpToCurrentState() {
+        final SparseArray<Region> regions = mRegions;
+        for (int i = 0, n = regions.size(); i < n; i++) {
+            regions.valueAt(i).drawable.jumpToCurrentState();
+        }
+        pruneRegions();
+    }
+
+    /**
+     * Clears the state of all regions, ending their animations.
+     */
+    public void clear() {
+        endAll();
+        mView.invalidate();
+    }
+
+    private void endAll() {
+        final SparseArray<Region> regions = mRegions;
+        for (int i = 0, n = regions.size(); i < n; i++) {
+            final Region r = regions.valueAt(i);
+            r.pressed = false;
+            r.focused = false;
+            r.updateState();
+            r.drawable.jumpToCurrentState();
+        }
+        pruneRegions();
+    }
+
+    /**
+     * Draws all active regions.
+     */
+    public void draw(@NonNull Canvas canvas) {
+        final SparseArray<Region> regions = mRegions;
+        final int n = regions.size();
+        if (n == 0) {
+            return;
+        }
+
+        for (int i = 0; i < n; i++) {
+            regions.valueAt(i).drawable.draw(canvas);
+        }
+        pruneRegions();
+    }
+
+    /**
+     * @return {@code true} if any region is active or animating
+     */
+    public boolean isActive() {
+        return mRegions.size() > 0;
+    }
+
+    private Region obtainRegion(int id, Rect bounds, boolean create) {
+        Region r = mRegions.get(id);
+        if (r == null) {
+            if (!create) {
+                return null;
+            }
+            if (mPoolSize > 0) {
+                r = mPool[--mPoolSize];
+                mPool[mPoolSize] = null;
+            } else {
+                r = new Region(new RippleDrawable(mView.getContext(), mColor, null, mBounded, mSpec));
+                r.drawable.setCallback(this);
+            }
+            mRegions.put(id, r);
+            if (mHasPendingHotspot && mPendingHotspotRegion == id) {
+                mHasPendingHotspot = false;
+                r.drawable.setHotspot(mPendingHotspotX, mPendingHotspotY);
+            }
+        }
+        r.drawable.setBounds(bounds);
+        return r;
+    }
+
+    private void pruneRegions() {
+        final SparseArray<Region> regions = mRegions;
+        for (int i = regions.size() - 1; i >= 0; i--) {
+            final Region r = regions.valueAt(i);
+            if (!r.pressed && !r.focused && r.drawable.isIdle()) {
+                regions.removeAt(i);
+                if (mPoolSize < MAX_POOL_SIZE) {
+                    mPool[mPoolSize++] = r;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+        // Regions are drawn by onDraw() in content coordinates, which
+        // View.invalidate() takes already. Drawable.getDirtyBounds() only
+        // exists on API 21 and above, go through the ripple's own.
+        mView.invalidate(((RippleDrawable) who).getDirtyBounds());
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+        // View.scheduleDrawable() only accepts the view's own drawables.
+        mView.postDelayed(what, when - SystemClock.uptimeMillis());
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+        mView.removeCallbacks(what);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        // All regions were released on detach.
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        // Nobody will see the animations, end them and release all regions.
+        endAll();
+    }
+
+    private static final class Region {
+        final RippleDrawable drawable;
+        boolean pressed;
+        boolean focused;
+
+        Region(RippleDrawable drawable) {
+            this.drawable = drawable;
+        }
+
+        void updateState() {
+            final int[] state;
+            if (pressed) {
+                state = focused ? STATE_PRESSED_FOCUSED : STATE_PRESSED;
+            } else {
+                state = focused ? STATE_FOCUSED : STATE_ENABLED;
+            }
+            drawable.setState(state);
+        }
+    }
+}
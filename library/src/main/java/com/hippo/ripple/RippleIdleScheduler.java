@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Runs app work when no ripple drawn by this library is animating, so that
+ * heavy work started from a click doesn't steal the frames of its ripple.
+ * <p>
+ * Every posted task has a timeout after which it runs anyway. Ripples of
+ * drawables that stop being drawn count as stopped once they would have
+ * finished.
+ * <p>
+ * On API 21 and above {@link Ripple} uses the platform ripple, which isn't
+ * tracked. There the scheduler always reports idle, and posted tasks run on
+ * the next message without waiting for any ripple.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+public final class RippleIdleScheduler {
+    private RippleIdleScheduler() {}
+
+    /** Default time in ms a task waits for ripples to go idle. */
+    public static final long DEFAULT_TIMEOUT = 1000;
+
+    /**
+     * Listener for changes of the process-wide ripple animation state.
+     */
+    public interface OnRippleStateChangeListener {
+        /**
+         * Called when a ripple starts animating and none was before.
+         */
+        void onRippleBusy();
+
+        /**
+         * Called when the last animating ripple stops. A ripple of a
+         * drawable that isn't drawn anymore stops when it would have
+         * finished, and without a callback, at the latest then.
+         */
+        void onRippleIdle();
+    }
+
+    private static final ArrayList<OnRippleStateChangeListener> sListeners =
+            new ArrayList<OnRippleStateChangeListener>();
+
+    private static final ArrayList<Runnable> sTasks = new ArrayList<Runnable>();
+    private static final ArrayList<Long> sDeadlines = new ArrayList<Long>();
+
+    private static Handler sHandler;
+
+    /** Time of the posted stale ripple check, or Long.MAX_VALUE if none. */
+    private static long sIdleCheckTime = Long.MAX_VALUE;
+
+    private static final Runnable sCheckIdle = new Runnable() {
+        @Override
+        public void run() {
+            sIdleCheckTime = Long.MAX_VALUE;
+            // Drops the stale ripples, and reports idle if they were the last.
+            if (!RippleTracker.isIdle()) {
+                scheduleIdleCheck(RippleTracker.getStaleTime());
+            }
+        }
+    };
+
+    private static final Runnable sRunTasks = new Runnable() {
+        @Override
+        public void run() {
+            runTasks();
+        }
+    };
+
+    /**
+     * @return {@code true} if no ripple drawn by this library is animating,
+     *         always on API 21 and above
+     */
+    public static boolean isIdle() {
+        return RippleTracker.isIdle();
+    }
+
+    /**
+     * Adds a listener for the ripples drawn by this library. It's never
+     * called on API 21 and above.
+     */
+    public static void addOnRippleStateChangeListener(
+            @NonNull OnRippleStateChangeListener listener) {
+        sListeners.add(listener);
+    }
+
+    public static void removeOnRippleStateChangeListener(
+            @NonNull OnRippleStateChangeListener listener) {
+        sListeners.remove(listener);
+    }
+
+    /**
+     * Runs {@code task} once no ripple is animating, or after
+     * {@link #DEFAULT_TIMEOUT} ms. On API 21 and above it doesn't wait.
+     */
+    public static void post(@NonNull Runnable task) {
+        post(task, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Runs {@code task} once no ripple is animating, or after
+     * {@code timeoutMillis} ms. Tasks run in posting order, one per message,
+     * never directly from this call. On API 21 and above they don't wait for
+     * platform ripples.
+     */
+    public static void post(@NonNull Runnable task, long timeoutMillis) {
+        sTasks.add(task);
+        sDeadlines.add(SystemClock.uptimeMillis() + timeoutMillis);
+        scheduleTasks();
+    }
+
+    /**
+     * Removes {@code task} if it hasn't run yet.
+     */
+    public static void remove(@NonNull Runnable task) {
+        final int index = sTasks.indexOf(task);
+        if (index >= 0) {
+            sTasks.remove(index);
+            sDeadlines.remove(index);
+        }
+    }
+
+    static void onBusy() {
+        final ArrayList<OnRippleStateChangeListener> listeners = sListeners;
+        for (int i = 0, n = listeners.size(); i < n; i++) {
+            listeners.get(i).onRippleBusy();
+        }
+    }
+
+    static void onIdle() {
+        if (sIdleCheckTime != Long.MAX_VALUE) {
+            sIdleCheckTime = Long.MAX_VALUE;
+            getHandler().removeCallbacks(sCheckIdle);
+        }
+
+        final ArrayList<OnRippleStateChangeListener> listeners = sListeners;
+        for (int i = 0, n = listeners.size(); i < n; i++) {
+            listeners.get(i).onRippleIdle();
+        }
+
+        if (!sTasks.isEmpty()) {
+            scheduleTasks();
+        }
+    }
+
+    /**
+     * Checks for stale ripples at {@code time}, so that nothing stays busy
+     * because of ripples that nobody draws anymore. Kept if an earlier
+     * check is already posted, which reschedules itself.
+     */
+    static void scheduleIdleCheck(long time) {
+        if (time < sIdleCheckTime) {
+            sIdleCheckTime = time;
+            final Handler handler = getHandler();
+            handler.removeCallbacks(sCheckIdle);
+            handler.postAtTime(sCheckIdle, time);
+        }
+    }
+
+    private static Handler getHandler() {
+        if (sHandler == null) {
+            sHandler = new Handler(Looper.getMainLooper());
+        }
+        return sHandler;
+    }
+
+    /**
+     * Schedules the next run: right away if idle, else at the earliest
+     * deadline.
+     */
+    private static void scheduleTasks() {
+        final Handler handler = getHandler();
+        handler.removeCallbacks(sRunTasks);
+        if (sTasks.isEmpty()) {
+            return;
+        }
+
+        if (RippleTracker.isIdle()) {
+            handler.post(sRunTasks);
+        } else {
+            long deadline = Long.MAX_VALUE;
+            final ArrayList<Long> deadlines = sDeadlines;
+            for (int i = 0, n = deadlines.size(); i < n; i++) {
+                deadline = Math.min(deadline, deadlines.get(i));
+            }
+            handler.postAtTime(sRunTasks, deadline);
+        }
+    }
+
+    /**
+     * Runs the first task if idle, or the first expired task, then schedules
+     * the next run.
+     */
+    private static void runTasks() {
+        int index = -1;
+        if (RippleTracker.isIdle()) {
+            index = sTasks.isEmpty() ? -1 : 0;
+        } else {
+            final long now = SystemClock.uptimeMillis();
+            final ArrayList<Long> deadlines = sDeadlines;
+            for (int i = 0, n = deadlines.size(); i < n; i++) {
+                if (deadlines.get(i) <= now) {
+                    index = i;
+                    break;
+                }
+            }
+        }
+
+        if (index >= 0) {
+            final Runnable task = sTasks.remove(index);
+            sDeadlines.remove(index);
+            task.run();
+        }
+
+        scheduleTasks();
+    }
+}
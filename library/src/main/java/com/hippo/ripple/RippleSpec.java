@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable timing and physics constants of a ripple. One instance can be
+ * shared by any number of drawables.
+ * <p>
+ * Only ripples drawn by this library use all values. Platform ripples on
+ * API 21 and above only honor {@link #getMaxRadius()}, and only on API 23
+ * and above.
+ */
+public final class RippleSpec {
+
+    /**
+     * Radius value that specifies the ripple radius should be computed based
+     * on the size of the ripple's container.
+     */
+    public static final int RADIUS_AUTO = -1;
+
+    /** The material design ripple. */
+    public static final RippleSpec MATERIAL = new Builder().build();
+
+    /**
+     * A ripple that is quick to enter and exit, which minimizes the number of
+     * animated frames. Useful on slow devices.
+     */
+    public static final RippleSpec SNAPPY = new Builder()
+            .setWaveTouchDownAcceleration(4096)
+            .setWaveTouchUpAcceleration(8192)
+            .setWaveOpacityDecayVelocity(6)
+            .setBoundedOriginExitDuration(150)
+            .setBoundedRadiusExitDuration(300)
+            .setBoundedOpacityExitDuration(200)
+            .setRippleEnterDelay(0)
+            .setForegroundOpacityEnterDurationFast(60)
+            .setBackgroundOpacityEnterDuration(200)
+            .setBackgroundOpacityEnterDurationFast(60)
+            .setBackgroundOpacityExitDuration(160)
+            .setMaxRipples(3)
+            .setMaxUnboundedRadius(240)
+            .build();
+
+    private final float mWaveTouchDownAcceleration;
+    private final float mWaveTouchUpAcceleration;
+    private final float mWaveOpacityDecayVelocity;
+    private final int mBoundedOriginExitDuration;
+    private final int mBoundedRadiusExitDuration;
+    private final int mBoundedOpacityExitDuration;
+    private final float mMaxBoundedRadius;
+    private final int mRippleEnterDelay;
+    private final int mForegroundOpacityEnterDurationFast;
+    private final int mBackgroundOpacityEnterDuration;
+    private final int mBackgroundOpacityEnterDurationFast;
+    private final int mBackgroundOpacityExitDuration;
+    private final int mMaxRipples;
+    private final int mMaxRadius;
+    private final float mMaxUnboundedRadius;
+    private final float mLowDetailArea;
+    private final int mLowDetailAlpha;
+
+    private RippleSpec(Builder builder) {
+        mWaveTouchDownAcceleration = builder.mWaveTouchDownAcceleration;
+        mWaveTouchUpAcceleration = builder.mWaveTouchUpAcceleration;
+        mWaveOpacityDecayVelocity = builder.mWaveOpacityDecayVelocity;
+        mBoundedOriginExitDuration = builder.mBoundedOriginExitDuration;
+        mBoundedRadiusExitDuration = builder.mBoundedRadiusExitDuration;
+        mBoundedOpacityExitDuration = builder.mBoundedOpacityExitDuration;
+        mMaxBoundedRadius = builder.mMaxBoundedRadius;
+        mRippleEnterDelay = builder.mRippleEnterDelay;
+        mForegroundOpacityEnterDurationFast = builder.mForegroundOpacityEnterDurationFast;
+        mBackgroundOpacityEnterDuration = builder.mBackgroundOpacityEnterDuration;
+        mBackgroundOpacityEnterDurationFast = builder.mBackgroundOpacityEnterDurationFast;
+        mBackgroundOpacityExitDuration = builder.mBackgroundOpacityExitDuration;
+        mMaxRipples = builder.mMaxRipples;
+        mMaxRadius = builder.mMaxRadius;
+        mMaxUnboundedRadius = builder.mMaxUnboundedRadius;
+        mLowDetailArea = builder.mLowDetailArea;
+        mLowDetailAlpha = builder.mLowDetailAlpha;
+    }
+
+    /** Acceleration of the ripple radius while pressed, in dp/s². */
+    public float getWaveTouchDownAcceleration() {
+        return mWaveTouchDownAcceleration;
+    }
+
+    /** Extra acceleration of the ripple radius once released, in dp/s². */
+    public float getWaveTouchUpAcceleration() {
+        return mWaveTouchUpAcceleration;
+    }
+
+    /** Opacity lost per second by an exiting unbounded ripple. */
+    public float getWaveOpacityDecayVelocity() {
+        return mWaveOpacityDecayVelocity;
+    }
+
+    /** Duration in ms of the origin animation of an exiting bounded ripple. */
+    public int getBoundedOriginExitDuration() {
+        return mBoundedOriginExitDuration;
+    }
+
+    /** Duration in ms of the radius animation of an exiting bounded ripple. */
+    public int getBoundedRadiusExitDuration() {
+        return mBoundedRadiusExitDuration;
+    }
+
+    /** Duration in ms of the opacity animation of an exiting bounded ripple. */
+    public int getBoundedOpacityExitDuration() {
+        return mBoundedOpacityExitDuration;
+    }
+
+    /** Radius in pixels that exiting bounded ripples grow to. */
+    public float getMaxBoundedRadius() {
+        return mMaxBoundedRadius;
+    }
+
+    /** Delay in ms before a pressed ripple starts to grow. */
+    public int getRippleEnterDelay() {
+        return mRippleEnterDelay;
+    }
+
+    /** Duration in ms of the opacity animation of an entering ripple. */
+    public int getForegroundOpacityEnterDurationFast() {
+        return mForegroundOpacityEnterDurationFast;
+    }
+
+    /** Duration in ms of the background enter animation. */
+    public int getBackgroundOpacityEnterDuration() {
+        return mBackgroundOpacityEnterDuration;
+    }
+
+    /** Duration in ms of the background enter animation for focus and hover. */
+    public int getBackgroundOpacityEnterDurationFast() {
+        return mBackgroundOpacityEnterDurationFast;
+    }
+
+    /** Duration in ms of the background exit animation. */
+    public int getBackgroundOpacityExitDuration() {
+        return mBackgroundOpacityExitDuration;
+    }
+
+    /** The maximum number of exiting ripples per drawable. */
+    public int getMaxRipples() {
+        return mMaxRipples;
+    }
+
+    /**
+     * The radius in pixels of the fully expanded ripple, or
+     * {@link #RADIUS_AUTO} to compute it based on the container size.
+     */
+    public int getMaxRadius() {
+        return mMaxRadius;
+    }
+
+    /**
+     * The maximum radius in dp of unbounded ripples whose radius is computed
+     * based on the container size, or 0 for no limit.
+     */
+    public float getMaxUnboundedRadius() {
+        return mMaxUnboundedRadius;
+    }
+
+    /**
+     * The area in pixels above which a faint circle is drawn without
+     * anti-aliasing.
+     *
+     * @see #getLowDetailAlpha()
+     */
+    public float getLowDetailArea() {
+        return mLowDetailArea;
+    }
+
+    /**
+     * The alpha, from 0 to 255, at or below which a large circle is drawn
+     * without anti-aliasing.
+     *
+     * @see #getLowDetailArea()
+     */
+    public int getLowDetailAlpha() {
+        return mLowDetailAlpha;
+    }
+
+    /**
+     * @return {@code true} if a circle of {@code radius} drawn with
+     *         {@code alpha} is large and faint enough to skip anti-aliasing
+     */
+    boolean isLowDetail(float radius, int alpha) {
+        return alpha <= mLowDetailAlpha && (float) Math.PI * radius * radius >= mLowDetailArea;
+    }
+
+    public static final class Builder {
+        private float mWaveTouchDownAcceleration = 1024;
+        private float mWaveTouchUpAcceleration = 3400;
+        private float mWaveOpacityDecayVelocity = 3;
+        private int mBoundedOriginExitDuration = 300;
+        private int mBoundedRadiusExitDuration = 800;
+        private int mBoundedOpacityExitDuration = 400;
+        private float mMaxBoundedRadius = 350;
+        private int mRippleEnterDelay = 80;
+        private int mForegroundOpacityEnterDurationFast = 120;
+        private int mBackgroundOpacityEnterDuration = 600;
+        private int mBackgroundOpacityEnterDurationFast = 120;
+        private int mBackgroundOpacityExitDuration = 480;
+        private int mMaxRipples = 10;
+        private int mMaxRadius = RADIUS_AUTO;
+        private float mMaxUnboundedRadius = 0;
+        private float mLowDetailArea = 250000;
+        private int mLowDetailAlpha = 8;
+
+        /**
+         * Creates a builder with the values of {@link #MATERIAL}.
+         */
+        public Builder() {}
+
+        /**
+         * Creates a builder with the values of {@code spec}.
+         */
+        public Builder(@NonNull RippleSpec spec) {
+            mWaveTouchDownAcceleration = spec.mWaveTouchDownAcceleration;
+            mWaveTouchUpAcceleration = spec.mWaveTouchUpAcceleration;
+            mWaveOpacityDecayVelocity = spec.mWaveOpacityDecayVelocity;
+            mBoundedOriginExitDuration = spec.mBoundedOriginExitDuration;
+            mBoundedRadiusExitDuration = spec.mBoundedRadiusExitDuration;
+            mBoundedOpacityExitDuration = spec.mBoundedOpacityExitDuration;
+            mMaxBoundedRadius = spec.mMaxBoundedRadius;
+            mRippleEnterDelay = spec.mRippleEnterDelay;
+            mForegroundOpacityEnterDurationFast = spec.mForegroundOpacityEnterDurationFast;
+            mBackgroundOpacityEnterDuration = spec.mBackgroundOpacityEnterDuration;
+            mBackgroundOpacityEnterDurationFast = spec.mBackgroundOpacityEnterDurationFast;
+            mBackgroundOpacityExitDuration = spec.mBackgroundOpacityExitDuration;
+            mMaxRipples = spec.mMaxRipples;
+            mMaxRadius = spec.mMaxRadius;
+            mMaxUnboundedRadius = spec.mMaxUnboundedRadius;
+            mLowDetailArea = spec.mLowDetailArea;
+            mLowDetailAlpha = spec.mLowDetailAlpha;
+        }
+
+        public Builder setWaveTouchDownAcceleration(float acceleration) {
+            mWaveTouchDownAcceleration = acceleration;
+            return this;
+        }
+
+        public Builder setWaveTouchUpAcceleration(float acceleration) {
+            mWaveTouchUpAcceleration = acceleration;
+            return this;
+        }
+
+        public Builder setWaveOpacityDecayVelocity(float velocity) {
+            mWaveOpacityDecayVelocity = velocity;
+            return this;
+        }
+
+        public Builder setBoundedOriginExitDuration(int duration) {
+            mBoundedOriginExitDuration = duration;
+            return this;
+        }
+
+        public Builder setBoundedRadiusExitDuration(int duration) {
+            mBoundedRadiusExitDuration = duration;
+            return this;
+        }
+
+        public Builder setBoundedOpacityExitDuration(int duration) {
+            mBoundedOpacityExitDuration = duration;
+            return this;
+        }
+
+        public Builder setMaxBoundedRadius(float radius) {
+            mMaxBoundedRadius = radius;
+            return this;
+        }
+
+        public Builder setRippleEnterDelay(int delay) {
+            mRippleEnterDelay = delay;
+            return this;
+        }
+
+        public Builder setForegroundOpacityEnterDurationFast(int duration) {
+            mForegroundOpacityEnterDurationFast = duration;
+            return this;
+        }
+
+        public Builder setBackgroundOpacityEnterDuration(int duration) {
+            mBackgroundOpacityEnterDuration = duration;
+            return this;
+        }
+
+        public Builder setBackgroundOpacityEnterDurationFast(int duration) {
+            mBackgroundOpacityEnterDurationFast = duration;
+            return this;
+        }
+
+        public Builder setBackgroundOpacityExitDuration(int duration) {
+            mBackgroundOpacityExitDuration = duration;
+            return this;
+        }
+
+        public Builder setMaxRipples(int maxRipples) {
+            if (maxRipples < 1) {
+                throw new IllegalArgumentException("maxRipples must be at least 1");
+            }
+            mMaxRipples = maxRipples;
+            return this;
+        }
+
+        public Builder setMaxRadius(int radius) {
+            mMaxRadius = radius;
+            return this;
+        }
+
+        public Builder setMaxUnboundedRadius(float radius) {
+            mMaxUnboundedRadius = radius;
+            return this;
+        }
+
+        /**
+         * Sets the thresholds below which circles are drawn without
+         * anti-aliasing. A negative {@code alpha} always anti-aliases.
+         *
+         * @param area the area in pixels
+         * @param alpha the alpha, from 0 to 255
+         */
+        public Builder setLowDetailThresholds(float area, int alpha) {
+            mLowDetailArea = area;
+            mLowDetailAlpha = alpha;
+            return this;
+        }
+
+        public RippleSpec build() {
+            return new RippleSpec(this);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the interactions reaching compat ripple drawables, so that they
+ * can be replayed against the engine later. Only hotspots, state changes
+ * and bounds changes are recorded, with their timing.
+ * <p>
+ * The trace starts with {@link #MAGIC} and {@link #VERSION} as ints. Then
+ * records follow, each made of a type byte, the drawable id and the time in
+ * ms since the previous record as unsigned varints, and a payload:
+ * <ul>
+ * <li>{@link #RECORD_CREATE}: a byte, 1 if the drawable is bounded, a byte
+ * of {@code STATE_*} flags, and left, top, right and bottom as varints</li>
+ * <li>{@link #RECORD_HOTSPOT}: x and y as floats</li>
+ * <li>{@link #RECORD_STATE}: a byte of {@code STATE_*} flags</li>
+ * <li>{@link #RECORD_BOUNDS}: left, top, right and bottom as varints</li>
+ * </ul>
+ * The first record of every drawable is {@link #RECORD_CREATE}. It holds
+ * the state and bounds the drawable had when it was first seen, which may
+ * have been set before recording started.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+public final class RippleTraceRecorder {
+    private RippleTraceRecorder() {}
+
+    public static final int MAGIC = 0x52505452;
+    public static final int VERSION = 2;
+
+    public static final int RECORD_CREATE = 0;
+    public static final int RECORD_HOTSPOT = 1;
+    public static final int RECORD_STATE = 2;
+    public static final int RECORD_BOUNDS = 3;
+
+    public static final int STATE_ENABLED = 1;
+    public static final int STATE_PRESSED = 1 << 1;
+    public static final int STATE_FOCUSED = 1 << 2;
+    public static final int STATE_HOVERED = 1 << 3;
+
+    static boolean sRecording;
+
+    private static ByteArrayOutputStream sBuffer;
+    private static DataOutputStream sOut;
+    private static long sLastTime;
+
+    /** Identifies the recording a drawable's trace id belongs to. */
+    private static int sSession;
+    private static int sNextId;
+
+    /**
+     * Starts recording, discarding any unfinished recording.
+     */
+    public static void start() {
+        sBuffer = new ByteArrayOutputStream(4096);
+        sOut = new DataOutputStream(sBuffer);
+        sLastTime = SystemClock.uptimeMillis();
+        sSession++;
+        sNextId = 0;
+        sRecording = true;
+
+        try {
+            sOut.writeInt(MAGIC);
+            sOut.writeInt(VERSION);
+        } catch (IOException e) {
+            // Can't happen with a byte array
+        }
+    }
+
+    /**
+     * Stops recording.
+     *
+     * @return the trace, empty if not recording
+     */
+    @NonNull
+    public static byte[] stop() {
+        if (!sRecording) {
+            return new byte[0];
+        }
+
+        sRecording = false;
+        final byte[] trace = sBuffer.toByteArray();
+        sBuffer = null;
+        sOut = null;
+        return trace;
+    }
+
+    public static boolean isRecording() {
+        return sRecording;
+    }
+
+    static void recordHotspot(RippleDrawable drawable, float x, float y) {
+        try {
+            writeHeader(drawable, RECORD_HOTSPOT);
+            sOut.writeFloat(x);
+            sOut.writeFloat(y);
+        } catch (IOException e) {
+            // Can't happen with a byte array
+        }
+    }
+
+    static void recordState(RippleDrawable drawable, int flags) {
+        try {
+            writeHeader(drawable, RECORD_STATE);
+            sOut.writeByte(flags);
+        } catch (IOException e) {
+            // Can't happen with a byte array
+        }
+    }
+
+    static void recordBounds(RippleDrawable drawable, Rect bounds) {
+        try {
+            writeHeader(drawable, RECORD_BOUNDS);
+            writeVarInt(bounds.left);
+            writeVarInt(bounds.top);
+            writeVarInt(bounds.right);
+            writeVarInt(bounds.bottom);
+        } catch (IOException e) {
+            // Can't happen with a byte array
+        }
+    }
+
+    private static void writeHeader(RippleDrawable drawable, int type) throws IOException {
+        if (drawable.mTraceSession != sSession) {
+            drawable.mTraceSession = sSession;
+            drawable.mTraceId = sNextId++;
+            writeRecordHeader(drawable.mTraceId, RECORD_CREATE);
+            sOut.writeByte(drawable.isBounded() ? 1 : 0);
+            sOut.writeByte(getStateFlags(drawable.getState()));
+            final Rect bounds = drawable.getBounds();
+            writeVarInt(bounds.left);
+            writeVarInt(bounds.top);
+            writeVarInt(bounds.right);
+            writeVarInt(bounds.bottom);
+        }
+        writeRecordHeader(drawable.mTraceId, type);
+    }
+
+    private static int getStateFlags(int[] stateSet) {
+        int flags = 0;
+        for (final int state : stateSet) {
+            if (state == android.R.attr.state_enabled) {
+                flags |= STATE_ENABLED;
+            } else if (state == android.R.attr.state_pressed) {
+                flags |= STATE_PRESSED;
+            } else if (state == android.R.attr.state_focused) {
+                flags |= STATE_FOCUSED;
+            } else if (state == android.R.attr.state_hovered) {
+                flags |= STATE_HOVERED;
+            }
+        }
+        return flags;
+    }
+
+    private static void writeRecordHeader(int id, int type) throws IOException {
+        final long now = SystemClock.uptimeMillis();
+        sOut.writeByte(type);
+        writeVarInt(id);
+        writeVarInt((int) (now - sLastTime));
+        sLastTime = now;
+    }
+
+    /**
+     * Writes {@code value} with 7 bits per byte, low bits first. Negative
+     * values take five bytes.
+     */
+    private static void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            sOut.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        sOut.writeByte(value);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.view.animation.AnimationUtils;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps track of the ripple animations running in the process and enforces
+ * a budget on how many may run at once. Only accessed on the UI thread.
+ */
+final class RippleTracker {
+    private RippleTracker() {}
+
+    /** Default maximum number of concurrently animating ripples. */
+    static final int DEFAULT_MAX_ANIMATING = 24;
+
+    /**
+     * Something that runs one or more ripple animations.
+     */
+    interface Animation {
+        /**
+         * @return the number of ripple animations currently running
+         */
+        int getAnimatingCount();
+
+        /**
+         * Jumps the oldest running ripple animation to its end state.
+         */
+        void endOldest();
+
+        /**
+         * @return the animation time after which nothing advances the
+         *         running animations anymore, or {@link Long#MAX_VALUE} if
+         *         they always end on their own
+         */
+        long getStaleTime();
+    }
+
+    /** Running animations, oldest first. */
+    private static final ArrayList<Animation> sAnimations = new ArrayList<Animation>();
+
+    private static int sMaxAnimating = DEFAULT_MAX_ANIMATING;
+    private static int sEvictionCount;
+
+    /**
+     * Called when {@code animation} starts running. Older animations are
+     * ended if this exceeds the budget.
+     */
+    static void begin(Animation animation) {
+        sAnimations.add(animation);
+        if (sAnimations.size() == 1) {
+            RippleIdleScheduler.onBusy();
+        }
+        RippleIdleScheduler.scheduleIdleCheck(animation.getStaleTime());
+        enforceBudget();
+    }
+
+    /**
+     * Called when {@code animation}, started by {@link #begin(Animation)},
+     * stops running.
+     */
+    static void end(Animation animation) {
+        if (sAnimations.remove(animation) && sAnimations.isEmpty()) {
+            RippleIdleScheduler.onIdle();
+        }
+    }
+
+    static boolean isIdle() {
+        dropStale();
+        return sAnimations.isEmpty();
+    }
+
+    /**
+     * @return the earliest time at which a running animation goes stale, or
+     *         {@link Long#MAX_VALUE} if none can
+     */
+    static long getStaleTime() {
+        final ArrayList<Animation> animations = sAnimations;
+        long staleTime = Long.MAX_VALUE;
+        for (int i = 0, n = animations.size(); i < n; i++) {
+            staleTime = Math.min(staleTime, animations.get(i).getStaleTime());
+        }
+        return staleTime;
+    }
+
+    static void setMaxAnimating(int maxAnimating) {
+        sMaxAnimating = maxAnimating;
+        enforceBudget();
+    }
+
+    static int getMaxAnimating() {
+        return sMaxAnimating;
+    }
+
+    static int getEvictionCount() {
+        return sEvictionCount;
+    }
+
+    /**
+     * Ends the oldest animations until no more than the budget are running.
+     * Called whenever the number of running animations may have grown.
+     */
+    static void enforceBudget() {
+        dropStale();
+
+        final ArrayList<Animation> animations = sAnimations;
+        int total = 0;
+        for (int i = 0, n = animations.size(); i < n; i++) {
+            total += animations.get(i).getAnimatingCount();
+        }
+
+        while (total > sMaxAnimating && !animations.isEmpty()) {
+            final Animation oldest = animations.get(0);
+            final int before = oldest.getAnimatingCount();
+            oldest.endOldest();
+
+            final int after = !animations.isEmpty() && animations.get(0) == oldest
+                    ? oldest.getAnimatingCount() : 0;
+            if (after >= before) {
+                // Didn't end anything, don't spin.
+                break;
+            }
+            sEvictionCount++;
+            total -= before - after;
+        }
+    }
+
+    /**
+     * Ends the animations nothing advances anymore, like the exiting ripples
+     * of a drawable that stopped being drawn without being detached. They
+     * would otherwise keep the drawable reachable and count against the
+     * budget forever.
+     */
+    private static void dropStale() {
+        final ArrayList<Animation> animations = sAnimations;
+        if (animations.isEmpty()) {
+            return;
+        }
+
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        for (int i = animations.size() - 1; i >= 0; i--) {
+            if (i >= animations.size()) {
+                continue;
+            }
+            final Animation animation = animations.get(i);
+            if (animation.getStaleTime() <= now) {
+                while (animation.getAnimatingCount() > 0) {
+                    animation.endOldest();
+                }
+            }
+        }
+    }
+}
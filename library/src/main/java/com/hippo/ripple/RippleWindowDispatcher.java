@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.ActionMode;
+import android.view.KeyEvent;
+import android.view.KeyboardShortcutGroup;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.SearchEvent;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * Feeds touch hotspots to the ripples of one window. It wraps the window
+ * callback, so it sees every touch event once, and forwards its
+ * coordinates only to the drawables that are currently pressed. Rippled
+ * views in the window don't need a touch listener of their own.
+ * <p>
+ * The dispatcher is owned by its window through the callback. It lets go of
+ * pressed drawables and unregisters itself when the decor view detaches, so
+ * it never keeps a finished activity alive.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+final class RippleWindowDispatcher implements Window.Callback {
+
+    /**
+     * Dispatchers of attached windows, keyed by decor view. Values are weak
+     * too: a dispatcher references its activity, which references the decor
+     * view, so a strong value would keep its own key reachable.
+     */
+    private static final WeakHashMap<View, WeakReference<RippleWindowDispatcher>> sDispatchers =
+            new WeakHashMap<View, WeakReference<RippleWindowDispatcher>>();
+
+    private final Window.Callback mWrapped;
+
+    private final View mDecor;
+
+    /** Drawables in the window that are pressed, usually one. */
+    private final ArrayList<RippleDrawable> mPressed = new ArrayList<RippleDrawable>(2);
+
+    private final int[] mLocation = new int[2];
+
+    // The last touch position in window coordinates, while a touch is down.
+    private boolean mTouching;
+    private float mTouchX;
+    private float mTouchY;
+
+    private RippleWindowDispatcher(Window.Callback wrapped, View decor) {
+        mWrapped = wrapped;
+        mDecor = decor;
+    }
+
+    /**
+     * Installs a dispatcher on {@code window}, unless one already is. Views
+     * must be attached to the window after this for their ripples to use it.
+     */
+    static void install(Window window) {
+        if (!(window.getCallback() instanceof RippleWindowDispatcher)) {
+            final RippleWindowDispatcher dispatcher =
+                    new RippleWindowDispatcher(window.getCallback(), window.getDecorView());
+            window.setCallback(dispatcher);
+            dispatcher.register();
+        }
+    }
+
+    private void register() {
+        sDispatchers.put(mDecor, new WeakReference<RippleWindowDispatcher>(this));
+    }
+
+    /**
+     * @return the dispatcher installed on the window of {@code rootView}, or
+     *         {@code null} if none is
+     */
+    static RippleWindowDispatcher get(View rootView) {
+        final WeakReference<RippleWindowDispatcher> ref = sDispatchers.get(rootView);
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * Called by a drawable of this window when its pressed state changes.
+     */
+    void onPressedChanged(RippleDrawable drawable, boolean pressed) {
+        if (pressed) {
+            if (!mPressed.contains(drawable)) {
+                mPressed.add(drawable);
+            }
+            // Pressed during dispatch, or later by a tap timeout. The ripple
+            // should start where the finger is.
+            if (mTouching) {
+                forwardHotspot(drawable);
+            }
+        } else {
+            mPressed.remove(drawable);
+        }
+    }
+
+    private void forwardHotspot(RippleDrawable drawable) {
+        final View view = drawable.getHostView();
+        if (view != null) {
+            view.getLocationInWindow(mLocation);
+            drawable.setHotspot(mTouchX - mLocation[0], mTouchY - mLocation[1]);
+        }
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        final int action = event.getActionMasked();
+        mTouchX = event.getX();
+        mTouchY = event.getY();
+        mTouching = action != MotionEvent.ACTION_UP && action != MotionEvent.ACTION_CANCEL;
+
+        final boolean handled = mWrapped.dispatchTouchEvent(event);
+
+        if (action == MotionEvent.ACTION_MOVE || action == MotionEvent.ACTION_UP) {
+            final ArrayList<RippleDrawable> pressed = mPressed;
+            for (int i = 0, n = pressed.size(); i < n; i++) {
+                forwardHotspot(pressed.get(i));
+            }
+        }
+
+        return handled;
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return mWrapped.dispatchKeyEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyShortcutEvent(KeyEvent event) {
+        return mWrapped.dispatchKeyShortcutEvent(event);
+    }
+
+    @Override
+    public boolean dispatchTrackballEvent(MotionEvent event) {
+        return mWrapped.dispatchTrackballEvent(event);
+    }
+
+    @Override
+    public boolean dispatchGenericMotionEvent(MotionEvent event) {
+        return mWrapped.dispatchGenericMotionEvent(event);
+    }
+
+    @Override
+    public boolean dispatchPopulateAccessibilityEvent(AccessibilityEvent event) {
+        return mWrapped.dispatchPopulateAccessibilityEvent(event);
+    }
+
+    @Override
+    public View onCreatePanelView(int featureId) {
+        return mWrapped.onCreatePanelView(featureId);
+    }
+
+    @Override
+    public boolean onCreatePanelMenu(int featureId, Menu menu) {
+        return mWrapped.onCreatePanelMenu(featureId, menu);
+    }
+
+    @Override
+    public boolean onPreparePanel(int featureId, View view, Menu menu) {
+        return mWrapped.onPreparePanel(featureId, view, menu);
+    }
+
+    @Override
+    public boolean onMenuOpened(int featureId, Menu menu) {
+        return mWrapped.onMenuOpened(featureId, menu);
+    }
+
+    @Override
+    public boolean onMenuItemSelected(int featureId, MenuItem item) {
+        return mWrapped.onMenuItemSelected(featureId, item);
+    }
+
+    @Override
+    public void onWindowAttributesChanged(WindowManager.LayoutParams attrs) {
+        mWrapped.onWindowAttributesChanged(attrs);
+    }
+
+    @Override
+    public void onContentChanged() {
+        mWrapped.onContentChanged();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        mWrapped.onWindowFocusChanged(hasFocus);
+    }
+
+    @Override
+    public void onAttachedToWindow() {
+        // A dialog window may be shown again after it was dismissed.
+        register();
+        mWrapped.onAttachedToWindow();
+    }
+
+    @Override
+    public void onDetachedFromWindow() {
+        sDispatchers.remove(mDecor);
+        mPressed.clear();
+        mTouching = false;
+        mWrapped.onDetachedFromWindow();
+    }
+
+    @Override
+    public void onPanelClosed(int featureId, Menu menu) {
+        mWrapped.onPanelClosed(featureId, menu);
+    }
+
+    @Override
+    public boolean onSearchRequested() {
+        return mWrapped.onSearchRequested();
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    @Override
+    public boolean onSearchRequested(SearchEvent searchEvent) {
+        return mWrapped.onSearchRequested(searchEvent);
+    }
+
+    @Override
+    public ActionMode onWindowStartingActionMode(ActionMode.Callback callback) {
+        return mWrapped.onWindowStartingActionMode(callback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.M)
+    @Override
+    public ActionMode onWindowStartingActionMode(ActionMode.Callback callback, int type) {
+        return mWrapped.onWindowStartingActionMode(callback, type);
+    }
+
+    @Override
+    public void onActionModeStarted(ActionMode mode) {
+        mWrapped.onActionModeStarted(mode);
+    }
+
+    @Override
+    public void onActionModeFinished(ActionMode mode) {
+        mWrapped.onActionModeFinished(mode);
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    @Override
+    public void onProvideKeyboardShortcuts(List<KeyboardShortcutGroup> data, Menu menu,
+            int deviceId) {
+        mWrapped.onProvideKeyboardShortcuts(data, menu, deviceId);
+    }
+}
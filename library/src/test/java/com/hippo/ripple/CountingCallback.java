@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Drawable callback that counts invalidations. Scheduled runnables run on
+ * the main looper, as they would for a view.
+ */
+class CountingCallback implements Drawable.Callback {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    int invalidations;
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidations++;
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        mHandler.postAtTime(what, who, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        mHandler.removeCallbacks(what, who);
+    }
+}
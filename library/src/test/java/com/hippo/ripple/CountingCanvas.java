@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Canvas that only counts what would be drawn. It doesn't call through to
+ * the shadowed canvas, so it doesn't allocate on its own.
+ */
+class CountingCanvas extends Canvas {
+
+    int circles;
+
+    /** Area in pixels of all circles, ignoring clipping. */
+    double fillArea;
+
+    /** Area in pixels of all anti-aliased circles, ignoring clipping. */
+    double antiAliasedArea;
+
+    /** Alpha of the last circle. */
+    int lastAlpha;
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        circles++;
+        lastAlpha = paint.getAlpha();
+        final double area = Math.PI * radius * radius;
+        fillArea += area;
+        if (paint.isAntiAlias()) {
+            antiAliasedArea += area;
+        }
+    }
+
+    @Override
+    public int save(int saveFlags) {
+        return 1;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        return true;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {}
+
+    @Override
+    public void restoreToCount(int saveCount) {}
+}
@@ -0,0 +1,706 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+import android.widget.ScrollView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Drives scripted interactions through the compat engine and fails when
+ * invalidations, drawn circles or per-frame allocations exceed the budgets
+ * in {@code ripple-perf-budgets.properties}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.KITKAT,
+        shadows = {ShadowFrameChoreographer.class, ShadowColorPaint.class})
+public class RipplePerformanceTest {
+
+    static final int FRAME_MS = 16;
+    private static final int MAX_FRAMES = 600;
+
+    static final int[] STATE_ENABLED = {
+            android.R.attr.state_enabled};
+    static final int[] STATE_PRESSED = {
+            android.R.attr.state_enabled, android.R.attr.state_pressed};
+    static final int[] STATE_FOCUSED = {
+            android.R.attr.state_enabled, android.R.attr.state_focused};
+    static final int[] STATE_HOVERED = {
+            android.R.attr.state_enabled, android.R.attr.state_hovered};
+
+    private static final boolean PRINT = Boolean.getBoolean("ripple.perf.print");
+
+    private Properties mBudgets;
+    private CountingCallback mCallback;
+    private CountingCanvas mCanvas;
+    private int mMaxCirclesPerFrame;
+
+    @Before
+    public void setUp() throws IOException {
+        mBudgets = new Properties();
+        final InputStream is = getClass().getResourceAsStream("/ripple-perf-budgets.properties");
+        try {
+            mBudgets.load(is);
+        } finally {
+            is.close();
+        }
+
+        mCallback = new CountingCallback();
+        mCanvas = new CountingCanvas();
+    }
+
+    static RippleDrawable newDrawable(boolean bounded) {
+        return newDrawable(bounded, RippleSpec.MATERIAL);
+    }
+
+    static RippleDrawable newDrawable(boolean bounded, RippleSpec spec) {
+        final RippleDrawable drawable = new RippleDrawable(RuntimeEnvironment.application,
+                ColorStateList.valueOf(0x1f000000), null, bounded, spec);
+        drawable.setBounds(0, 0, 360, 72);
+        return drawable;
+    }
+
+    private RippleDrawable newCountedDrawable(boolean bounded) {
+        return newCountedDrawable(bounded, RippleSpec.MATERIAL);
+    }
+
+    private RippleDrawable newCountedDrawable(boolean bounded, RippleSpec spec) {
+        final RippleDrawable drawable = newDrawable(bounded, spec);
+        drawable.setCallback(mCallback);
+        mCallback.invalidations = 0;
+        mCanvas.circles = 0;
+        mCanvas.fillArea = 0;
+        mCanvas.antiAliasedArea = 0;
+        mMaxCirclesPerFrame = 0;
+        return drawable;
+    }
+
+    /**
+     * Runs frames until {@code frames} have passed or, if {@code frames} is
+     * negative, until the drawable stops invalidating and goes idle. A frame
+     * is only drawn if the drawable invalidated since the last one was
+     * drawn, including while drawing it.
+     */
+    private void runFrames(RippleDrawable drawable, int frames) {
+        int drawnInvalidations = -1;
+        for (int i = 0; frames < 0 ? i < MAX_FRAMES : i < frames; i++) {
+            ShadowLooper.idleMainLooper(FRAME_MS);
+
+            if (mCallback.invalidations != drawnInvalidations) {
+                final int circles = mCanvas.circles;
+                drawnInvalidations = mCallback.invalidations;
+                drawable.draw(mCanvas);
+                mMaxCirclesPerFrame = Math.max(mMaxCirclesPerFrame, mCanvas.circles - circles);
+            } else if (frames < 0 && drawable.isIdle()) {
+                return;
+            }
+        }
+        assertTrue("Never went idle", frames >= 0);
+    }
+
+    private void checkBudgets(String lifecycle) {
+        check(lifecycle + ".invalidations", mCallback.invalidations);
+        check(lifecycle + ".circles", mCanvas.circles);
+        check(lifecycle + ".maxCirclesPerFrame", mMaxCirclesPerFrame);
+    }
+
+    private void check(String key, long value) {
+        final long budget = Long.parseLong(mBudgets.getProperty(key));
+        if (PRINT) {
+            System.out.println(key + " = " + value + " (budget " + budget + ")");
+        }
+        assertTrue(key + " is " + value + ", over budget " + budget, value <= budget);
+    }
+
+    private void tap(boolean bounded) {
+        final RippleDrawable drawable = newCountedDrawable(bounded);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_PRESSED);
+        runFrames(drawable, 3);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        checkBudgets(bounded ? "tap.bounded" : "tap.unbounded");
+    }
+
+    private void press(boolean bounded) {
+        final RippleDrawable drawable = newCountedDrawable(bounded);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_PRESSED);
+        runFrames(drawable, 60);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        checkBudgets(bounded ? "press.bounded" : "press.unbounded");
+    }
+
+    @Test
+    public void tapBounded() {
+        tap(true);
+    }
+
+    @Test
+    public void tapUnbounded() {
+        tap(false);
+    }
+
+    @Test
+    public void tapWithinFrame() {
+        final RippleDrawable drawable = newCountedDrawable(true);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_PRESSED);
+        drawable.setState(STATE_ENABLED);
+        assertFalse(drawable.isIdle());
+        runFrames(drawable, -1);
+        assertTrue("Tap not shown", mCanvas.circles > 0);
+        checkBudgets("tapWithinFrame");
+    }
+
+    /**
+     * Taps {@code drawable} {@code taps} times at one spot, each tap exiting
+     * at the same time, and draws the frame after.
+     *
+     * @return the number of circles drawn by that frame
+     */
+    private int tapInPlace(RippleDrawable drawable, int taps) {
+        for (int i = 0; i < taps; i++) {
+            drawable.setHotspot(40, 30);
+            drawable.setState(STATE_PRESSED);
+            drawable.setState(STATE_ENABLED);
+            drawable.draw(mCanvas);
+        }
+        ShadowLooper.idleMainLooper(FRAME_MS);
+        final int circles = mCanvas.circles;
+        drawable.draw(mCanvas);
+        return mCanvas.circles - circles;
+    }
+
+    @Test
+    public void coincidentRipplesMerged() {
+        RippleDrawable drawable = newCountedDrawable(true);
+        final int single = tapInPlace(drawable, 1);
+        final float a = mCanvas.lastAlpha / 255.0f;
+        assertTrue("Tap not shown", a > 0);
+        runFrames(drawable, -1);
+
+        final int taps = 3;
+        drawable = newCountedDrawable(true);
+        assertEquals(single, tapInPlace(drawable, taps));
+        // Blending alphas a and b over each other yields 1 - (1 - a)(1 - b).
+        final double combined = 1 - Math.pow(1 - a, taps);
+        assertEquals(255 * combined, mCanvas.lastAlpha, 1.5);
+        runFrames(drawable, -1);
+    }
+
+    @Test
+    public void undrawnRipplesUntracked() {
+        // Replaced as a background, without being detached or hidden.
+        final RippleDrawable replaced = newCountedDrawable(true);
+        tapInPlace(replaced, 1);
+        assertTrue(replaced.getAnimatingCount() > 0);
+        replaced.setCallback(null);
+        RippleTracker.isIdle();
+        assertEquals(0, replaced.getAnimatingCount());
+
+        // Still has a callback, but isn't drawn anymore.
+        final RippleDrawable forgotten = newCountedDrawable(true);
+        tapInPlace(forgotten, 1);
+        assertFalse(RippleTracker.isIdle());
+        ShadowLooper.idleMainLooper(1000);
+        assertTrue(RippleTracker.isIdle());
+        assertEquals(0, forgotten.getAnimatingCount());
+    }
+
+    @Test
+    public void undrawnRipplesReportIdle() {
+        final int[] idle = new int[1];
+        final RippleIdleScheduler.OnRippleStateChangeListener listener =
+                new RippleIdleScheduler.OnRippleStateChangeListener() {
+                    @Override
+                    public void onRippleBusy() {}
+
+                    @Override
+                    public void onRippleIdle() {
+                        idle[0]++;
+                    }
+                };
+        RippleIdleScheduler.addOnRippleStateChangeListener(listener);
+        try {
+            tapInPlace(newCountedDrawable(true), 1);
+            assertFalse(RippleTracker.isIdle());
+            // Nothing draws the drawable anymore.
+            ShadowLooper.idleMainLooper(1000);
+            assertEquals(1, idle[0]);
+        } finally {
+            RippleIdleScheduler.removeOnRippleStateChangeListener(listener);
+        }
+    }
+
+    @Test
+    public void hostHotspotCreatesNoRegion() {
+        final int[] invalidations = new int[1];
+        final View view = new View(RuntimeEnvironment.application) {
+            @Override
+            public void invalidate(Rect dirty) {
+                invalidations[0]++;
+            }
+        };
+        final RippleHost host = new RippleHost(view, ColorStateList.valueOf(0x1f000000), true);
+        final Rect bounds = new Rect(0, 0, 72, 72);
+
+        // Hovering over a region without a state.
+        host.setHotspot(1, bounds, 10, 10);
+        assertFalse(host.isActive());
+
+        host.setPressed(1, bounds, true);
+        assertTrue(host.isActive());
+        invalidations[0] = 0;
+        host.setHotspot(1, bounds, 30, 30);
+        assertEquals(1, invalidations[0]);
+
+        host.clear();
+        assertFalse(host.isActive());
+    }
+
+    @Test
+    public void releaseWhileHiddenNoTap() throws IllegalAccessException {
+        final RippleDrawable released = newCountedDrawable(true);
+        released.setState(STATE_ENABLED);
+        final long idle = retainedBytes(released);
+
+        final RippleDrawable drawable = newCountedDrawable(true);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_PRESSED);
+        drawable.setVisible(false, false);
+        drawable.setState(STATE_ENABLED);
+        // The release isn't a tap, nothing may be built while hidden.
+        assertEquals(idle, retainedBytes(drawable));
+
+        drawable.setVisible(true, false);
+        runFrames(drawable, 30);
+        assertEquals(0, mCanvas.circles);
+        assertTrue(drawable.isIdle());
+    }
+
+    /**
+     * @return a view in the window of a shown activity, with a counted
+     *         ripple background
+     */
+    private View newHostView(boolean scrollingParent) {
+        final Activity activity = Robolectric.buildActivity(Activity.class)
+                .create().start().resume().visible().get();
+        final ViewGroup parent = scrollingParent
+                ? new ScrollView(activity) : new FrameLayout(activity);
+        final View view = new View(activity);
+        parent.addView(view, new FrameLayout.LayoutParams(360, 72));
+        activity.setContentView(parent);
+        // Let the window attach its views.
+        ShadowLooper.idleMainLooper(FRAME_MS);
+
+        Ripple.addRipple(view, ColorStateList.valueOf(0x1f000000));
+        final RippleDrawable drawable = (RippleDrawable) view.getBackground();
+        drawable.setBounds(0, 0, 360, 72);
+        drawable.setCallback(mCallback);
+        mCallback.invalidations = 0;
+        mCanvas.circles = 0;
+        return view;
+    }
+
+    /**
+     * Moves {@code view} and reports it the way a scrolling parent does, on
+     * the draw of the frame after the scroll.
+     */
+    private static void scroll(View view) throws ReflectiveOperationException {
+        view.offsetTopAndBottom(-40);
+        final Method dispatch = ViewTreeObserver.class
+                .getDeclaredMethod("dispatchOnScrollChanged");
+        dispatch.setAccessible(true);
+        dispatch.invoke(view.getViewTreeObserver());
+    }
+
+    @Test
+    public void scrollDropsPress() throws Exception {
+        Ripple.setScrollAwarePressEnabled(true);
+        try {
+            final View view = newHostView(false);
+            final RippleDrawable drawable = (RippleDrawable) view.getBackground();
+
+            // A drag starts: the container cancels the press right away, and
+            // the scroll is reported on the next frame.
+            drawable.setHotspot(40, 30);
+            view.setPressed(true);
+            view.setPressed(false);
+            runFrames(drawable, 1);
+            scroll(view);
+            runFrames(drawable, -1);
+
+            // Only the draws that waited for the scroll, nothing animated.
+            assertEquals(RippleDrawable.UNCERTAIN_RELEASE_DRAWS, mCallback.invalidations);
+            assertEquals(0, mCanvas.circles);
+            assertTrue(RippleTracker.isIdle());
+        } finally {
+            Ripple.setScrollAwarePressEnabled(false);
+        }
+    }
+
+    @Test
+    public void uncertainTapShown() {
+        Ripple.setScrollAwarePressEnabled(true);
+        try {
+            final View view = newHostView(false);
+            final RippleDrawable drawable = (RippleDrawable) view.getBackground();
+            drawable.setHotspot(40, 30);
+            view.setPressed(true);
+            view.setPressed(false);
+            runFrames(drawable, -1);
+            assertTrue("Tap not shown", mCanvas.circles > 0);
+        } finally {
+            Ripple.setScrollAwarePressEnabled(false);
+        }
+    }
+
+    @Test
+    public void scrollingParentNotDelayedTwice() {
+        Ripple.setScrollAwarePressEnabled(true);
+        try {
+            final View view = newHostView(true);
+            final RippleDrawable drawable = (RippleDrawable) view.getBackground();
+            drawable.setHotspot(40, 30);
+            // The parent already held the press back for the tap timeout, so
+            // it starts animating right away.
+            view.setPressed(true);
+            assertTrue("Press held back", mCallback.invalidations > 0);
+            view.setPressed(false);
+            runFrames(drawable, -1);
+            assertTrue("Press not shown", mCanvas.circles > 0);
+        } finally {
+            Ripple.setScrollAwarePressEnabled(false);
+        }
+    }
+
+    @Test
+    public void replacedRippleDetached() throws ReflectiveOperationException {
+        final View view = newHostView(false);
+        final RippleDrawable first = (RippleDrawable) view.getBackground();
+        Ripple.addRipple(view, ColorStateList.valueOf(0x1f000000), null, RippleSpec.MATERIAL);
+        final RippleDrawable second = (RippleDrawable) view.getBackground();
+
+        assertNull(first.getHostView());
+        assertSame(view, second.getHostView());
+
+        // Only the new drawable still follows the view.
+        final Field infoField = View.class.getDeclaredField("mListenerInfo");
+        infoField.setAccessible(true);
+        final Object info = infoField.get(view);
+        final Field listenersField =
+                info.getClass().getDeclaredField("mOnAttachStateChangeListeners");
+        listenersField.setAccessible(true);
+        final Collection<?> listeners = (Collection<?>) listenersField.get(info);
+        assertFalse(listeners.contains(first));
+        assertTrue(listeners.contains(second));
+    }
+
+    @Test
+    public void unrelatedScrollKeepsPress() {
+        Ripple.setScrollAwarePressEnabled(true);
+        try {
+            final View view = newHostView(false);
+            final RippleDrawable drawable = (RippleDrawable) view.getBackground();
+            drawable.setHotspot(40, 30);
+            drawable.setState(STATE_PRESSED);
+            // Something else in the window scrolled, the view didn't move.
+            drawable.onScrollChanged();
+            runFrames(drawable, 3);
+            assertEquals(0, mCanvas.circles);
+
+            // Shown once the tap timeout confirms it.
+            runFrames(drawable, 10);
+            assertTrue("Press not shown", mCanvas.circles > 0);
+            drawable.setState(STATE_ENABLED);
+            runFrames(drawable, -1);
+        } finally {
+            Ripple.setScrollAwarePressEnabled(false);
+        }
+    }
+
+    @Test
+    public void pressBounded() {
+        press(true);
+    }
+
+    @Test
+    public void pressUnbounded() {
+        press(false);
+    }
+
+    @Test
+    public void focus() {
+        final RippleDrawable drawable = newCountedDrawable(true);
+        drawable.setState(STATE_FOCUSED);
+        runFrames(drawable, 60);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        checkBudgets("focus");
+    }
+
+    /**
+     * Focuses a new drawable right after the last one, optionally changing
+     * another state before its first frame.
+     *
+     * @return the number of invalidations after the focus
+     */
+    private int traverse(boolean otherChange) {
+        ShadowLooper.idleMainLooper(FRAME_MS);
+        final RippleDrawable drawable = newCountedDrawable(true);
+        drawable.setState(STATE_FOCUSED);
+        if (otherChange) {
+            drawable.setState(new int[] {android.R.attr.state_enabled,
+                    android.R.attr.state_focused, android.R.attr.state_activated});
+        }
+        // Well within the traversal window of the next focus.
+        runFrames(drawable, 5);
+        drawable.jumpToCurrentState();
+        return mCallback.invalidations;
+    }
+
+    @Test
+    public void traversalSurvivesStateChanges() {
+        final RippleDrawable first = newCountedDrawable(true);
+        first.setState(STATE_FOCUSED);
+        first.jumpToCurrentState();
+        final int traversal = traverse(false);
+        assertEquals(traversal, traverse(true));
+    }
+
+    @Test
+    public void hover() {
+        final RippleDrawable drawable = newCountedDrawable(true);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_HOVERED);
+        runFrames(drawable, 30);
+        drawable.setHotspot(80, 40);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        checkBudgets("hover");
+    }
+
+    /**
+     * Taps a full screen unbounded ripple.
+     *
+     * @return the area drawn with anti-aliasing, and the total area
+     */
+    private double[] tapFullScreen(RippleSpec spec) {
+        final RippleDrawable drawable = newCountedDrawable(false, spec);
+        drawable.setBounds(0, 0, 1080, 1920);
+        drawable.setHotspot(540, 960);
+        drawable.setState(STATE_PRESSED);
+        runFrames(drawable, 3);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        return new double[] {mCanvas.antiAliasedArea, mCanvas.fillArea};
+    }
+
+    @Test
+    public void radiusCapReducesFillArea() {
+        final RippleSpec fullDetail = new RippleSpec.Builder()
+                .setLowDetailThresholds(Float.MAX_VALUE, -1)
+                .build();
+        final RippleSpec capped = new RippleSpec.Builder()
+                .setMaxUnboundedRadius(240)
+                .build();
+
+        final double[] full = tapFullScreen(fullDetail);
+        final double[] lod = tapFullScreen(RippleSpec.MATERIAL);
+        final double[] lodCapped = tapFullScreen(capped);
+        if (PRINT) {
+            System.out.println("fill full: aa " + (long) full[0] + ", total " + (long) full[1]);
+            System.out.println("fill lod: aa " + (long) lod[0] + ", total " + (long) lod[1]);
+            System.out.println("fill lod capped: aa " + (long) lodCapped[0]
+                    + ", total " + (long) lodCapped[1]);
+        }
+
+        // Low detail only turns anti-aliasing off, the same area is filled.
+        assertEquals(full[1], lod[1], 1);
+        // The cap is what fills less.
+        check("fill.cappedPercent", (long) Math.ceil(100 * lodCapped[1] / lod[1]));
+    }
+
+    /**
+     * Estimates the bytes retained by {@code root} alone, assuming 64-bit
+     * references and 16-byte object headers. Shared configuration, like the
+     * context, color and spec, and Robolectric's shadow state are skipped.
+     */
+    private static long retainedBytes(Object root) throws IllegalAccessException {
+        final IdentityHashMap<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+        final ArrayDeque<Object> queue = new ArrayDeque<Object>();
+        queue.add(root);
+        seen.put(root, true);
+
+        long bytes = 0;
+        while (!queue.isEmpty()) {
+            final Object o = queue.poll();
+            final Class<?> clazz = o.getClass();
+            long size = 16;
+            if (clazz.isArray()) {
+                final int length = Array.getLength(o);
+                final Class<?> component = clazz.getComponentType();
+                size += length * (component.isPrimitive() ? primitiveSize(component) : 8);
+                if (!component.isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        enqueue(Array.get(o, i), seen, queue);
+                    }
+                }
+            } else {
+                for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                    for (Field f : c.getDeclaredFields()) {
+                        if (Modifier.isStatic(f.getModifiers()) || f.getName().startsWith("__robo")) {
+                            continue;
+                        }
+                        final Class<?> type = f.getType();
+                        size += type.isPrimitive() ? primitiveSize(type) : 8;
+                        if (!type.isPrimitive()) {
+                            f.setAccessible(true);
+                            enqueue(f.get(o), seen, queue);
+                        }
+                    }
+                }
+            }
+            bytes += (size + 7) & ~7;
+        }
+        return bytes;
+    }
+
+    private static void enqueue(Object o, IdentityHashMap<Object, Boolean> seen,
+            ArrayDeque<Object> queue) {
+        if (o == null || seen.containsKey(o) || o instanceof Context
+                || o instanceof ColorStateList || o instanceof RippleSpec
+                || o instanceof Drawable.Callback || o instanceof Reference
+                || o instanceof Class || o.getClass().getName().contains("Shadow")) {
+            return;
+        }
+        seen.put(o, true);
+        queue.add(o);
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+
+    @Test
+    public void idleFootprint() throws IllegalAccessException {
+        final long fresh = retainedBytes(newCountedDrawable(false));
+
+        final RippleDrawable drawable = newCountedDrawable(false);
+        drawable.setHotspot(40, 30);
+        drawable.setState(STATE_PRESSED);
+        runFrames(drawable, 3);
+        drawable.setState(STATE_ENABLED);
+        runFrames(drawable, -1);
+        final long used = retainedBytes(drawable);
+
+        if (PRINT) {
+            System.out.println("Retained bytes per idle drawable: fresh " + fresh
+                    + ", after a tap " + used);
+        }
+        check("idle.bytesFresh", fresh);
+        check("idle.bytesAfterTap", used);
+    }
+
+    @Test
+    public void drawDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        final long threadId = Thread.currentThread().getId();
+
+        // Robolectric allocates while resolving an intercepted framework
+        // call for the first time. Run the same lifecycle once beforehand, so
+        // only its steady per-call overhead is left in the measurement.
+        for (int run = 0; run < 2; run++) {
+            final RippleDrawable drawable = newCountedDrawable(false);
+            drawable.setHotspot(40, 30);
+            drawable.setState(STATE_PRESSED);
+            runFrames(drawable, 3);
+            drawable.setState(STATE_ENABLED);
+
+            // Background, exiting ripple and lazily created state are all
+            // live after the first frames.
+            runFrames(drawable, 3);
+
+            long maxBytes = 0;
+            int drawnInvalidations = -1;
+            for (int i = 0; i < MAX_FRAMES && !drawable.isIdle(); i++) {
+                ShadowLooper.idleMainLooper(FRAME_MS);
+                if (mCallback.invalidations != drawnInvalidations) {
+                    drawnInvalidations = mCallback.invalidations;
+                    final long before = bean.getThreadAllocatedBytes(threadId);
+                    drawable.draw(mCanvas);
+                    maxBytes = Math.max(maxBytes,
+                            bean.getThreadAllocatedBytes(threadId) - before);
+                }
+            }
+            if (run == 1) {
+                check("draw.bytesPerFrame", maxBytes);
+            }
+        }
+    }
+}
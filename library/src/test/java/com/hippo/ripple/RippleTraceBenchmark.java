@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.ripple;
+
+import android.content.res.ColorStateList;
+import android.os.Build;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays traces made by {@link RippleTraceRecorder} against the compat
+ * engine with a simulated clock, and reports per-frame CPU time,
+ * allocations and invalidations.
+ * <p>
+ * A scripted trace is always replayed. A trace recorded on a device can be
+ * replayed too by passing its path in the {@code ripple.trace} system
+ * property.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.KITKAT,
+        shadows = {ShadowFrameChoreographer.class, ShadowColorPaint.class})
+public class RippleTraceBenchmark {
+
+    private static final int FRAME_MS = RipplePerformanceTest.FRAME_MS;
+    private static final int MAX_IDLE_FRAMES = 600;
+
+    private static final int[][] STATES = new int[16][];
+
+    static {
+        for (int flags = 0; flags < STATES.length; flags++) {
+            final int[] state = new int[Integer.bitCount(flags)];
+            int i = 0;
+            if ((flags & RippleTraceRecorder.STATE_ENABLED) != 0) {
+                state[i++] = android.R.attr.state_enabled;
+            }
+            if ((flags & RippleTraceRecorder.STATE_PRESSED) != 0) {
+                state[i++] = android.R.attr.state_pressed;
+            }
+            if ((flags & RippleTraceRecorder.STATE_FOCUSED) != 0) {
+                state[i++] = android.R.attr.state_focused;
+            }
+            if ((flags & RippleTraceRecorder.STATE_HOVERED) != 0) {
+                state[i] = android.R.attr.state_hovered;
+            }
+            STATES[flags] = state;
+        }
+    }
+
+    /**
+     * Records taps, a long press, focus traversal and a resize across two
+     * list rows, one bounded and one unbounded. Both are laid out before
+     * recording starts, like the rows of a list already on screen.
+     */
+    private static byte[] recordScriptedTrace() {
+        final RippleDrawable row = RipplePerformanceTest.newDrawable(true);
+        final RippleDrawable icon = RipplePerformanceTest.newDrawable(false);
+        row.setState(RipplePerformanceTest.STATE_ENABLED);
+        icon.setState(RipplePerformanceTest.STATE_ENABLED);
+        RippleTraceRecorder.start();
+
+        // Tap, then a quick second tap before the first ripple is gone.
+        for (int i = 0; i < 2; i++) {
+            row.setHotspot(40 + i * 100, 30);
+            row.setState(RipplePerformanceTest.STATE_PRESSED);
+            advance(48);
+            row.setHotspot(42 + i * 100, 31);
+            row.setState(RipplePerformanceTest.STATE_ENABLED);
+            advance(120);
+        }
+
+        // Long press with the finger drifting.
+        icon.setHotspot(180, 36);
+        icon.setState(RipplePerformanceTest.STATE_PRESSED);
+        for (int i = 0; i < 30; i++) {
+            advance(FRAME_MS);
+            icon.setHotspot(180 + i, 36);
+        }
+        icon.setState(RipplePerformanceTest.STATE_ENABLED);
+        advance(400);
+
+        // Keyboard focus moving back and forth.
+        for (int i = 0; i < 4; i++) {
+            final RippleDrawable from = (i & 1) == 0 ? icon : row;
+            final RippleDrawable to = (i & 1) == 0 ? row : icon;
+            from.setState(RipplePerformanceTest.STATE_ENABLED);
+            to.setState(RipplePerformanceTest.STATE_FOCUSED);
+            advance(300);
+        }
+        icon.setState(RipplePerformanceTest.STATE_ENABLED);
+
+        // Resized while pressed, like a row expanding.
+        row.setHotspot(60, 20);
+        row.setState(RipplePerformanceTest.STATE_PRESSED);
+        advance(100);
+        row.setBounds(0, 0, 360, 144);
+        advance(100);
+        row.setState(RipplePerformanceTest.STATE_ENABLED);
+        advance(1000);
+
+        return RippleTraceRecorder.stop();
+    }
+
+    private static void advance(int ms) {
+        ShadowLooper.idleMainLooper(ms);
+    }
+
+    @Test
+    public void replayScriptedTrace() throws IOException {
+        final Report report = replay(recordScriptedTrace());
+        report.print("scripted");
+        assertEquals(2, report.drawables);
+        assertTrue(report.frames > 0);
+        assertTrue(report.invalidations > 0);
+        assertTrue("Nothing drawn", report.circles > 0);
+    }
+
+    @Test
+    public void replayRecordedTrace() throws IOException {
+        final String path = System.getProperty("ripple.trace");
+        if (path == null) {
+            return;
+        }
+
+        final InputStream is = new FileInputStream(new File(path));
+        try {
+            final byte[] buffer = new byte[(int) new File(path).length()];
+            new DataInputStream(is).readFully(buffer);
+            replay(buffer).print(path);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static Report replay(byte[] trace) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(trace));
+        assertEquals(RippleTraceRecorder.MAGIC, in.readInt());
+        assertEquals(RippleTraceRecorder.VERSION, in.readInt());
+
+        final Replay replay = new Replay();
+        while (true) {
+            final int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                break;
+            }
+            final int id = readVarInt(in);
+            replay.advance(readVarInt(in));
+
+            switch (type) {
+                case RippleTraceRecorder.RECORD_CREATE:
+                    final boolean bounded = in.readByte() != 0;
+                    final int[] state = STATES[in.readByte() & 0xf];
+                    replay.create(id, bounded, state, readVarInt(in), readVarInt(in),
+                            readVarInt(in), readVarInt(in));
+                    break;
+                case RippleTraceRecorder.RECORD_HOTSPOT:
+                    replay.drawable(id).setHotspot(in.readFloat(), in.readFloat());
+                    break;
+                case RippleTraceRecorder.RECORD_STATE:
+                    replay.drawable(id).setState(STATES[in.readByte() & 0xf]);
+                    break;
+                case RippleTraceRecorder.RECORD_BOUNDS:
+                    replay.drawable(id).setBounds(readVarInt(in), readVarInt(in),
+                            readVarInt(in), readVarInt(in));
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+        }
+        replay.finish();
+        return replay.report;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Drawables of a trace, each with its own callback so only the ones that
+     * invalidated are drawn in a frame.
+     */
+    private static final class Replay {
+        final ArrayList<RippleDrawable> drawables = new ArrayList<RippleDrawable>();
+        final ArrayList<CountingCallback> callbacks = new ArrayList<CountingCallback>();
+        final ArrayList<Integer> drawn = new ArrayList<Integer>();
+        final CountingCanvas canvas = new CountingCanvas();
+        final Report report = new Report();
+
+        /** Time since the last frame, in ms. */
+        int sinceFrame;
+
+        /**
+         * Creates a drawable already in {@code state} and laid out, without
+         * animating into either.
+         */
+        void create(int id, boolean bounded, int[] state, int left, int top, int right,
+                int bottom) throws IOException {
+            if (id != drawables.size()) {
+                throw new IOException("Drawable " + id + " created out of order");
+            }
+            final RippleDrawable drawable = new RippleDrawable(RuntimeEnvironment.application,
+                    ColorStateList.valueOf(0x1f000000), null, bounded, RippleSpec.MATERIAL);
+            drawable.setState(state);
+            drawable.setBounds(left, top, right, bottom);
+            final CountingCallback callback = new CountingCallback();
+            drawable.setCallback(callback);
+            drawables.add(drawable);
+            callbacks.add(callback);
+            drawn.add(0);
+            report.drawables++;
+        }
+
+        RippleDrawable drawable(int id) throws IOException {
+            if (id >= drawables.size()) {
+                throw new IOException("Unknown drawable " + id);
+            }
+            return drawables.get(id);
+        }
+
+        /**
+         * Moves the clock forward, running every frame that starts before the
+         * next record.
+         */
+        void advance(int ms) {
+            while (sinceFrame + ms >= FRAME_MS) {
+                final int step = FRAME_MS - sinceFrame;
+                ShadowLooper.idleMainLooper(step);
+                ms -= step;
+                sinceFrame = 0;
+                frame();
+            }
+            if (ms > 0) {
+                ShadowLooper.idleMainLooper(ms);
+                sinceFrame += ms;
+            }
+        }
+
+        /** Runs frames until every drawable is idle. */
+        void finish() {
+            for (int i = 0; i < MAX_IDLE_FRAMES && !isIdle(); i++) {
+                advance(FRAME_MS);
+            }
+            assertTrue("Never went idle", isIdle());
+        }
+
+        private boolean isIdle() {
+            for (int i = 0, n = drawables.size(); i < n; i++) {
+                if (!drawables.get(i).isIdle()
+                        || callbacks.get(i).invalidations != drawn.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void frame() {
+            final long cpuBefore = report.cpuTime();
+            final long bytesBefore = report.allocatedBytes();
+            boolean drew = false;
+            for (int i = 0, n = drawables.size(); i < n; i++) {
+                final int invalidations = callbacks.get(i).invalidations;
+                if (invalidations != drawn.get(i)) {
+                    drawables.get(i).draw(canvas);
+                    drawn.set(i, invalidations);
+                    drew = true;
+                }
+            }
+            if (drew) {
+                report.addFrame(report.cpuTime() - cpuBefore,
+                        report.allocatedBytes() - bytesBefore);
+            }
+
+            int invalidations = 0;
+            for (int i = 0, n = callbacks.size(); i < n; i++) {
+                invalidations += callbacks.get(i).invalidations;
+            }
+            report.invalidations = invalidations;
+            report.circles = canvas.circles;
+            report.fillArea = canvas.fillArea;
+            report.antiAliasedArea = canvas.antiAliasedArea;
+        }
+    }
+
+    /**
+     * Totals of one replay. CPU time and allocations are only measured if
+     * the JVM supports it, and are 0 otherwise.
+     */
+    private static final class Report {
+        private final ThreadMXBean mBean = ManagementFactory.getThreadMXBean();
+        private final com.sun.management.ThreadMXBean mAllocBean;
+        private final long mThreadId = Thread.currentThread().getId();
+
+        int drawables;
+        int frames;
+        int invalidations;
+        int circles;
+        double fillArea;
+        double antiAliasedArea;
+        long totalCpuNanos;
+        long maxCpuNanos;
+        long totalBytes;
+        long maxBytes;
+
+        Report() {
+            if (mBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) mBean).isThreadAllocatedMemorySupported()) {
+                mAllocBean = (com.sun.management.ThreadMXBean) mBean;
+                mAllocBean.setThreadAllocatedMemoryEnabled(true);
+            } else {
+                mAllocBean = null;
+            }
+            if (mBean.isCurrentThreadCpuTimeSupported()) {
+                mBean.setThreadCpuTimeEnabled(true);
+            }
+        }
+
+        long cpuTime() {
+            return mBean.isThreadCpuTimeEnabled() ? mBean.getCurrentThreadCpuTime() : 0;
+        }
+
+        long allocatedBytes() {
+            return mAllocBean != null ? mAllocBean.getThreadAllocatedBytes(mThreadId) : 0;
+        }
+
+        void addFrame(long cpuNanos, long bytes) {
+            frames++;
+            totalCpuNanos += cpuNanos;
+            maxCpuNanos = Math.max(maxCpuNanos, cpuNanos);
+            totalBytes += bytes;
+            maxBytes = Math.max(maxBytes, bytes);
+        }
+
+        void print(String name) {
+            System.out.println("Trace " + name + ": " + drawables + " drawables, "
+                    + frames + " frames, " + invalidations + " invalidations, "
+                    + circles + " circles");
+            System.out.println("  fill: " + (long) fillArea + "px, anti-aliased "
+                    + (long) antiAliasedArea + "px");
+            if (frames > 0) {
+                System.out.println("  cpu/frame: avg " + totalCpuNanos / frames / 1000
+                        + "us, max " + maxCpuNanos / 1000 + "us");
+                System.out.println("  bytes/frame: avg " + totalBytes / frames
+                        + ", max " + maxBytes);
+            }
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2009 The Android Open Source Project
+ * Copyright (C) 2016 Hippo Seven
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -13,17 +13,26 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package com.hippo.ripple;
 
+import android.graphics.Paint;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowPaint;
+
 /**
- * A class that contains utility methods related to numbers.
+ * Takes the alpha from the color, like the framework does. Robolectric
+ * keeps the two apart, so ripples would draw with a zero alpha and be
+ * skipped.
  */
-final class MathUtils {
-    private MathUtils() {
-    }
+@Implements(Paint.class)
+public class ShadowColorPaint extends ShadowPaint {
 
-    public static float lerp(float start, float stop, float amount) {
-        return start + (stop - start) * amount;
+    @Implementation
+    @Override
+    public void setColor(int color) {
+        super.setColor(color);
+        setAlpha(color >>> 24);
     }
 }
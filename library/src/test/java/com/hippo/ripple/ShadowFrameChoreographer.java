@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hippo.ripple;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowChoreographer;
+
+/**
+ * Runs animation callbacks once per {@link RipplePerformanceTest#FRAME_MS}
+ * on the looper clock. Robolectric's own choreographer runs them as soon as
+ * they are posted with a clock of its own, so animators finish in a single
+ * burst while exiting ripples, which follow {@link SystemClock}, don't.
+ */
+@Implements(Choreographer.class)
+public class ShadowFrameChoreographer extends ShadowChoreographer {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Implementation
+    @Override
+    public void postCallbackDelayed(int callbackType, Runnable action, Object token,
+            long delayMillis) {
+        mHandler.postDelayed(action, Math.max(delayMillis, RipplePerformanceTest.FRAME_MS));
+    }
+
+    @Implementation
+    @Override
+    public void removeCallbacks(int callbackType, Runnable action, Object token) {
+        mHandler.removeCallbacks(action);
+    }
+
+    @Implementation
+    @Override
+    public long getFrameTimeNanos() {
+        return SystemClock.uptimeMillis() * 1000000;
+    }
+}